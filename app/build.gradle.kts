@@ -4,6 +4,7 @@ plugins {
     id("kotlin-parcelize")
     alias(libs.plugins.google.gms.google.services)
     alias(libs.plugins.ksp)
+    alias(libs.plugins.androidx.baselineprofile)
 }
 
 android {
@@ -25,7 +26,8 @@ android {
 
     buildTypes {
         release {
-            isMinifyEnabled = false
+            isMinifyEnabled = true
+            isShrinkResources = true
             proguardFiles(
                 getDefaultProguardFile("proguard-android-optimize.txt"),
                 "proguard-rules.pro"
@@ -36,6 +38,8 @@ android {
         // MUDANÇA: Atualizado para Java 17, o padrão moderno.
         sourceCompatibility = JavaVersion.VERSION_17
         targetCompatibility = JavaVersion.VERSION_17
+        // java.time (usado pelo :schedule-core) só existe a partir da API 26; o minSdk é 24
+        isCoreLibraryDesugaringEnabled = true
     }
     kotlinOptions {
         // MUDANÇA: Atualizado para JVM 17.
@@ -49,6 +53,11 @@ android {
         kotlinCompilerExtensionVersion = libs.versions.kotlinCompilerExtensionVersion.get()
     }
 
+    sourceSets {
+        // As duas variantes criadas pelo plugin de Baseline Profile usam o mesmo manifesto extra
+        maybeCreate("nonMinifiedRelease").manifest.srcFile("src/benchmarkRelease/AndroidManifest.xml")
+    }
+
     packaging {
         resources {
             excludes += "/META-INF/{AL2.0,LGPL2.1}"
@@ -58,6 +67,10 @@ android {
 
 dependencies {
 
+    // Cálculo dos horários das doses (módulo JVM puro)
+    implementation(project(":schedule-core"))
+    coreLibraryDesugaring(libs.desugar.jdk.libs)
+
     implementation(libs.androidx.core.ktx)
     implementation(libs.androidx.appcompat)
     implementation(libs.material) // Material 2 para Views (login, etc.)
@@ -74,12 +87,15 @@ dependencies {
     implementation(libs.androidx.material.icons.extended) // Pacote de ícones
     implementation(platform(libs.androidx.compose.bom))
     implementation(libs.androidx.compose.animation)
+    // Listas imutáveis nos modelos de UI (o Compose as trata como estáveis)
+    implementation(libs.kotlinx.collections.immutable)
 
     // Dependência do Leitor de QR Code
     implementation("com.journeyapps:zxing-android-embedded:4.3.0")
 
     // Dependências de Teste
     testImplementation(libs.junit)
+    testImplementation(libs.org.json) // O org.json do android.jar é só um stub nos testes locais
     androidTestImplementation(libs.androidx.junit)
     androidTestImplementation(libs.androidx.espresso.core)
     androidTestImplementation(platform(libs.androidx.compose.bom))
@@ -101,4 +117,23 @@ dependencies {
 
     // Dependência do WorkManager
     implementation(libs.androidx.work.runtime.ktx)
+
+    // Paging 3 (histórico de doses no relatório)
+    implementation(libs.androidx.paging.runtime.ktx)
+    implementation(libs.androidx.paging.compose)
+
+    // App Startup (inicialização em etapas, ver AppStartup)
+    implementation(libs.androidx.startup.runtime)
+
+    // Instala o Baseline Profile (gerado pelo :macrobenchmark) no primeiro start
+    implementation(libs.androidx.profileinstaller)
+    baselineProfile(project(":macrobenchmark"))
+}
+
+baselineProfile {
+    // Perfil gerado sob demanda (./gradlew :app:generateBaselineProfile) e versionado em
+    // src/main/generated/baselineProfiles, que já traz um perfil inicial escrito à mão
+    automaticGenerationDuringBuild = false
+    saveInSrc = true
+    mergeIntoMain = true
 }
\ No newline at end of file
@@ -18,4 +18,21 @@
 
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+#-renamesourcefileattribute SourceFile
+# Mantém os números de linha nos stack traces do release minificado
+-keepattributes SourceFile,LineNumberTable
+
+# O Firestore (toObject/toObjects e set com objeto) cria e lê os modelos por reflexão: construtor
+# vazio, getters/setters e nomes dos campos precisam sobreviver ao R8. Todos os usos:
+#   Treatment, MedicationDose   -> SyncCoordinator, RealtimeDoseSync, DoseRekeyWorker, CaregiverMirror
+#   CaregiverDose               -> CaregiverMirror.dosesForPatients (collectionGroup)
+#   UserProfile                 -> ProfileViewModel (toObject), CadastroActivity/CompletarCadastroActivity (set)
+#   MedicationStatus            -> campo enum de MedicationDose e CaregiverDose
+# CaregiverTreatment e as demais entidades só passam pelo Room (código gerado, sem reflexão).
+# Modelo novo lido ou gravado pelo Firestore entra aqui.
+-keepattributes Signature,*Annotation*
+-keep class com.example.medicamentos.data.Treatment { *; }
+-keep class com.example.medicamentos.data.MedicationDose { *; }
+-keep class com.example.medicamentos.data.CaregiverDose { *; }
+-keep class com.example.medicamentos.data.UserProfile { *; }
+-keep enum com.example.medicamentos.data.MedicationStatus { *; }
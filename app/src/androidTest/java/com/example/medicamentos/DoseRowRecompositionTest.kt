@@ -0,0 +1,80 @@
+package com.example.medicamentos
+
+import androidx.compose.foundation.lazy.LazyColumn
+import androidx.compose.foundation.lazy.items
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.SideEffect
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.ui.test.junit4.createComposeRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.example.medicamentos.data.DoseGroupUi
+import com.example.medicamentos.data.DoseRowUi
+import com.example.medicamentos.data.MedicationDose
+import com.example.medicamentos.data.MedicationStatus
+import com.example.medicamentos.data.groupDosesByTime
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Confere que, ao confirmar uma dose, só o card dela é recomposto: os demais recebem um
+ * [DoseRowUi] igual ao anterior e o Compose os pula.
+ */
+@RunWith(AndroidJUnit4::class)
+class DoseRowRecompositionTest {
+
+    @get:Rule
+    val composeRule = createComposeRule()
+
+    private val compositions = HashMap<Int, Int>()
+
+    private val noop: (DoseRowUi) -> Unit = {}
+
+    @Composable
+    private fun CountedCard(row: DoseRowUi) {
+        SideEffect { compositions[row.id] = (compositions[row.id] ?: 0) + 1 }
+        MedicationCard(
+            medication = row,
+            onMedicationTaken = noop,
+            onMedicationPostponed = noop,
+            onDeleteDose = noop
+        )
+    }
+
+    @Test
+    fun confirmingOneDoseRecomposesOnlyItsCard() {
+        val doses = (1..4).map { index ->
+            MedicationDose(
+                id = index,
+                treatmentId = index,
+                medicationName = "Remédio $index",
+                dosage = "1 comprimido",
+                time = if (index <= 2) "08:00" else "20:00",
+                date = "2025-03-10"
+            )
+        }
+        val groups = mutableStateOf<List<DoseGroupUi>>(groupDosesByTime(doses))
+
+        composeRule.setContent {
+            LazyColumn {
+                groups.value.forEach { group ->
+                    items(items = group.doses, key = { it.id }, contentType = { "dose" }) { row ->
+                        CountedCard(row)
+                    }
+                }
+            }
+        }
+        composeRule.waitForIdle()
+        assertEquals(mapOf(1 to 1, 2 to 1, 3 to 1, 4 to 1), compositions)
+
+        // Mesma lista, nova instância: só a dose 2 muda de status
+        val updated = doses.map {
+            if (it.id == 2) it.copy(status = MedicationStatus.TAKEN, takenTimestamp = System.currentTimeMillis()) else it.copy()
+        }
+        composeRule.runOnIdle { groups.value = groupDosesByTime(updated) }
+        composeRule.waitForIdle()
+
+        assertEquals(mapOf(1 to 1, 2 to 2, 3 to 1, 4 to 1), compositions)
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.medicamentos.data
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Confere que os triggers mantêm adherence_daily igual à contagem feita direto em daily_doses.
+ */
+@RunWith(AndroidJUnit4::class)
+class AdherenceAggregateTest {
+
+    @get:Rule
+    val db = InMemoryDatabaseRule()
+
+    private val dao get() = db.treatmentDao
+
+    @Test
+    fun triggersFollowInsertUpdateAndDelete() = runBlocking {
+        dao.insertDoses(
+            listOf(
+                testDose("2025-03-10", "08:00", MedicationStatus.TAKEN, treatmentId = 1),
+                testDose("2025-03-10", "20:00", MedicationStatus.MISSED, treatmentId = 1),
+                testDose("2025-03-10", "08:00", MedicationStatus.PENDING, treatmentId = 2),
+                testDose("2025-03-11", "08:00", MedicationStatus.TAKEN, treatmentId = 2)
+            )
+        )
+        assertEquals(AdherenceTotals(takenCount = 2, missedCount = 1), dao.getAdherenceTotals().first())
+
+        // PENDING -> TAKEN e MISSED -> TAKEN
+        val pending = dao.findDoseByUid(DoseGenerator.doseUid(2, "2025-03-10", "08:00"))!!
+        dao.updateDose(pending.copy(status = MedicationStatus.TAKEN))
+        val missed = dao.findDoseByUid(DoseGenerator.doseUid(1, "2025-03-10", "20:00"))!!
+        dao.updateDose(missed.copy(status = MedicationStatus.TAKEN))
+        assertEquals(AdherenceTotals(takenCount = 4, missedCount = 0), dao.getAdherenceTotals().first())
+
+        dao.deleteTreatmentAndDoses(1)
+        assertEquals(AdherenceTotals(takenCount = 2, missedCount = 0), dao.getAdherenceTotals().first())
+
+        dao.clearAllData()
+        assertEquals(AdherenceTotals(), dao.getAdherenceTotals().first())
+    }
+
+    @Test
+    fun countHistoryBeforeMatchesThePositionInTheHistory() = runBlocking {
+        dao.insertDoses(
+            listOf(
+                testDose("2025-03-09", "08:00", MedicationStatus.TAKEN, treatmentId = 1),
+                testDose("2025-03-10", "08:00", MedicationStatus.TAKEN, treatmentId = 1),
+                testDose("2025-03-10", "08:00", MedicationStatus.MISSED, treatmentId = 2),
+                testDose("2025-03-10", "20:00", MedicationStatus.TAKEN, treatmentId = 1),
+                testDose("2025-03-10", "20:00", MedicationStatus.PENDING, treatmentId = 2),
+                testDose("2025-03-11", "08:00", MedicationStatus.MISSED, treatmentId = 1)
+            )
+        )
+
+        // Cada dose do histórico, na ordem da lista, tem exatamente a sua posição como contagem anterior
+        val history = dao.getHistoryFirstPage(100)
+        assertEquals(5, history.size)
+        history.forEachIndexed { position, dose ->
+            assertEquals(position, dao.countHistoryBefore(dose.date, dose.time, dose.id))
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.medicamentos.data
+
+import android.database.sqlite.SQLiteDatabase
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Um banco da versão 5 é recriado do zero (sem migração): os triggers de adesão precisam
+ * existir mesmo assim, senão adherence_daily fica vazia para sempre.
+ */
+@RunWith(AndroidJUnit4::class)
+class AdherenceDestructiveMigrationTest {
+
+    private val context = InstrumentationRegistry.getInstrumentation().targetContext
+    private var database: AppDatabase? = null
+
+    @Before
+    fun createVersion5Database() {
+        context.deleteDatabase(TEST_DB)
+        // Esquema antigo qualquer: só a versão importa para o fallback destrutivo
+        SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(TEST_DB), null).use { db ->
+            db.execSQL("CREATE TABLE daily_doses (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, medicationName TEXT)")
+            db.execSQL("INSERT INTO daily_doses (medicationName) VALUES ('Antiga')")
+            db.version = 5
+        }
+    }
+
+    @After
+    fun deleteDatabase() {
+        database?.close()
+        context.deleteDatabase(TEST_DB)
+    }
+
+    @Test
+    fun destructiveUpgradeFromVersion5KeepsAdherenceTriggers() = runBlocking {
+        val db = AppDatabase.builder(context, TEST_DB).build().also { database = it }
+        val dao = db.treatmentDao()
+
+        dao.insertDoses(
+            listOf(
+                dose("08:00", MedicationStatus.TAKEN),
+                dose("20:00", MedicationStatus.MISSED)
+            )
+        )
+
+        assertEquals(AdherenceTotals(takenCount = 1, missedCount = 1), dao.getAdherenceTotals().first())
+    }
+
+    private fun dose(time: String, status: MedicationStatus) = testDose("2025-03-10", time, status)
+
+    companion object {
+        private const val TEST_DB = "adherence-destructive-test"
+    }
+}
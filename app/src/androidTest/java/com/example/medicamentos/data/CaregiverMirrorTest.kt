@@ -0,0 +1,54 @@
+package com.example.medicamentos.data
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Cópia local do modo cuidador: cada snapshot grava só as diferenças e não mistura pacientes.
+ */
+@RunWith(AndroidJUnit4::class)
+class CaregiverMirrorTest {
+
+    @get:Rule
+    val db = InMemoryDatabaseRule()
+
+    private val dao get() = db.caregiverDao
+
+    private fun dose(patientUid: String, date: String, time: String, status: MedicationStatus = MedicationStatus.PENDING) =
+        testDose(date, time, status).toCaregiverDose(patientUid)
+
+    @Test
+    fun applyDoses_updatesChangedRemovesMissingAndPrunesPastDays() = runBlocking {
+        dao.applyDoses(listOf("ana"), "2025-09-30", listOf(dose("ana", "2025-09-30", "08:00")))
+        dao.applyDoses(listOf("ana", "bruno"), "2025-10-01", listOf(
+            dose("ana", "2025-10-01", "08:00"),
+            dose("ana", "2025-10-01", "20:00"),
+            dose("bruno", "2025-10-01", "09:00")
+        ))
+
+        // Novo snapshot de Ana: a dose das 08:00 foi tomada e a das 20:00 foi removida
+        dao.applyDoses(listOf("ana"), "2025-10-01", listOf(dose("ana", "2025-10-01", "08:00", MedicationStatus.TAKEN)))
+
+        val ana = dao.observeDoses(listOf("ana"), "2025-10-01").first()
+        assertEquals(listOf("08:00" to MedicationStatus.TAKEN), ana.map { it.time to it.status })
+        assertEquals(0, dao.getDoses(listOf("ana"), "2025-09-30").size)
+        // O snapshot de Ana não toca nas doses de Bruno
+        assertEquals(1, dao.getDoses(listOf("bruno"), "2025-10-01").size)
+    }
+
+    @Test
+    fun applyTreatments_roundTripsAndRemovesMissing() = runBlocking {
+        val losartana = Treatment(id = 1, medicationName = "Losartana", dosage = "50mg", frequencyPerDay = 2)
+        val insulina = Treatment(id = 2, medicationName = "Insulina", dosage = "10UI", frequencyPerDay = 3)
+        dao.applyTreatments("ana", listOf(losartana, insulina).map { it.toCaregiverTreatment("ana") })
+        dao.applyTreatments("ana", listOf(losartana).map { it.toCaregiverTreatment("ana") })
+
+        val treatments = dao.observeTreatments("ana").first().map { it.toTreatment() }
+        assertEquals(listOf(losartana), treatments)
+    }
+}
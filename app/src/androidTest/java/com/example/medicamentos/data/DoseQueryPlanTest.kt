@@ -0,0 +1,82 @@
+package com.example.medicamentos.data
+
+import androidx.room.Room
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.After
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Confere, pelo plano de execução do SQLite, que as consultas quentes de daily_doses usam os
+ * índices criados na versão 7 do schema (sem depender de tempo medido, que oscila no emulador).
+ *
+ * As consultas são as mesmas do [TreatmentDao].
+ */
+@RunWith(AndroidJUnit4::class)
+class DoseQueryPlanTest {
+
+    private lateinit var database: AppDatabase
+
+    @Before
+    fun createDatabase() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase::class.java).build()
+    }
+
+    @After
+    fun closeDatabase() {
+        database.close()
+    }
+
+    // Linhas "detail" do EXPLAIN QUERY PLAN
+    private fun queryPlan(sql: String, vararg args: Any): String {
+        val details = ArrayList<String>()
+        database.openHelper.readableDatabase.query("EXPLAIN QUERY PLAN $sql", args).use { cursor ->
+            val detail = cursor.getColumnIndexOrThrow("detail")
+            while (cursor.moveToNext()) details += cursor.getString(detail)
+        }
+        return details.joinToString("\n")
+    }
+
+    private fun assertUsesIndex(plan: String, index: String = "index_daily_doses_") {
+        assertTrue("Plano sem o índice $index:\n$plan", Regex("USING (COVERING )?INDEX $index").containsMatchIn(plan))
+    }
+
+    @Test
+    fun dosesOfADay_useDateTimeIndex() {
+        assertUsesIndex(
+            queryPlan("SELECT * FROM daily_doses WHERE date = ? ORDER BY time ASC", "2025-03-10"),
+            "index_daily_doses_date_time"
+        )
+        assertUsesIndex(
+            queryPlan("SELECT * FROM daily_doses WHERE date = ? AND status = 'PENDING'", "2025-03-10"),
+            "index_daily_doses_date_time"
+        )
+    }
+
+    @Test
+    fun pendingDosesByMinute_useStatusScheduledAtIndex() {
+        assertUsesIndex(
+            queryPlan(
+                "SELECT * FROM daily_doses WHERE status = 'PENDING' AND scheduledAt BETWEEN ? AND ? ORDER BY scheduledAt ASC, id ASC",
+                29_000_000L, 29_002_880L
+            ),
+            "index_daily_doses_status_scheduledAt"
+        )
+        assertUsesIndex(
+            queryPlan("SELECT * FROM daily_doses WHERE status = 'PENDING' AND scheduledAt > ? ORDER BY scheduledAt ASC LIMIT 1", 29_000_000L),
+            "index_daily_doses_status_scheduledAt"
+        )
+    }
+
+    @Test
+    fun dosesOfATreatment_useAnIndex() {
+        assertUsesIndex(queryPlan("SELECT * FROM daily_doses WHERE treatmentId = ? AND date = ?", 42, "2025-03-10"))
+        assertUsesIndex(
+            queryPlan("SELECT * FROM daily_doses WHERE treatmentId = ? AND date BETWEEN ? AND ?", 42, "2025-03-01", "2025-03-31")
+        )
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.medicamentos.data
+
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteOpenHelper
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Roda a [AppDatabase.MIGRATION_6_7] sobre um banco com o schema da versão 6 e confere o
+ * preenchimento de scheduledAt (hora local convertida pelo SQLite) e os índices criados.
+ *
+ * O banco nunca exportou o schema (exportSchema = false), então não há JSON da versão 6 para o
+ * MigrationTestHelper: o schema antigo é recriado aqui com o SQL que o Room gerava.
+ */
+@RunWith(AndroidJUnit4::class)
+class Migration6To7Test {
+
+    private val context = InstrumentationRegistry.getInstrumentation().targetContext
+    private lateinit var helper: SupportSQLiteOpenHelper
+
+    @Before
+    fun createVersion6Database() {
+        context.deleteDatabase(TEST_DB)
+        val configuration = SupportSQLiteOpenHelper.Configuration.builder(context)
+            .name(TEST_DB)
+            .callback(object : SupportSQLiteOpenHelper.Callback(6) {
+                override fun onCreate(db: SupportSQLiteDatabase) {
+                    db.execSQL(
+                        "CREATE TABLE IF NOT EXISTS `daily_doses` (" +
+                            "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `treatmentId` INTEGER NOT NULL, " +
+                            "`medicationName` TEXT NOT NULL, `dosage` TEXT NOT NULL, `time` TEXT NOT NULL, " +
+                            "`date` TEXT NOT NULL, `status` TEXT NOT NULL, `takenTimestamp` INTEGER, " +
+                            "`postponeCount` INTEGER NOT NULL)"
+                    )
+                }
+
+                override fun onUpgrade(db: SupportSQLiteDatabase, oldVersion: Int, newVersion: Int) = Unit
+            })
+            .build()
+        helper = FrameworkSQLiteOpenHelperFactory().create(configuration)
+    }
+
+    @After
+    fun deleteDatabase() {
+        helper.close()
+        context.deleteDatabase(TEST_DB)
+    }
+
+    private fun insertDose(db: SupportSQLiteDatabase, date: String, time: String) {
+        db.execSQL(
+            "INSERT INTO daily_doses (treatmentId, medicationName, dosage, time, date, status, postponeCount) " +
+                "VALUES (1, 'Amoxicilina', '500mg', ?, ?, 'PENDING', 0)",
+            arrayOf<Any>(time, date)
+        )
+    }
+
+    @Test
+    fun migration6To7_backfillsScheduledAtAndCreatesIndexes() {
+        val db = helper.writableDatabase
+        val valid = listOf("2025-03-10" to "08:00", "2025-03-10" to "23:45", "2025-12-31" to "00:15")
+        valid.forEach { (date, time) -> insertDose(db, date, time) }
+        // Linha mal formatada: fica com 0, como o app trata horários inválidos
+        insertDose(db, "2025-03-10", "")
+
+        AppDatabase.MIGRATION_6_7.migrate(db)
+
+        val scheduledAt = ArrayList<Long>()
+        db.query("SELECT scheduledAt FROM daily_doses ORDER BY id").use { cursor ->
+            while (cursor.moveToNext()) scheduledAt += cursor.getLong(0)
+        }
+        assertEquals(valid.map { (date, time) -> DoseGenerator.epochMinute(date, time) } + 0L, scheduledAt)
+
+        val indexes = HashSet<String>()
+        db.query("SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = 'daily_doses'").use { cursor ->
+            while (cursor.moveToNext()) indexes += cursor.getString(0)
+        }
+        assertTrue(
+            indexes.containsAll(
+                listOf(
+                    "index_daily_doses_date_time",
+                    "index_daily_doses_treatmentId_scheduledAt",
+                    "index_daily_doses_status_scheduledAt"
+                )
+            )
+        )
+    }
+
+    companion object {
+        private const val TEST_DB = "migration-6-7-test"
+    }
+}
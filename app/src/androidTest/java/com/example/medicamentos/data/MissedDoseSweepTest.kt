@@ -0,0 +1,49 @@
+package com.example.medicamentos.data
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Varredura de doses esquecidas: um único UPDATE pega doses de vários dias atrás e só elas.
+ */
+@RunWith(AndroidJUnit4::class)
+class MissedDoseSweepTest {
+
+    @get:Rule
+    val db = InMemoryDatabaseRule()
+
+    private val dao get() = db.treatmentDao
+
+    @Test
+    fun sweepCatchesUpOverSeveralDaysAndSparesRecentDoses() = runBlocking {
+        dao.insertDoses(
+            listOf(
+                testDose("2025-03-01", "08:00"),
+                testDose("2025-03-05", "20:00"),
+                testDose("2025-03-10", "07:00", MedicationStatus.TAKEN),
+                testDose("2025-03-10", "09:00"), // dentro do prazo
+                testDose("2025-03-11", "08:00")  // futura
+            )
+        )
+        val cutoff = DoseGenerator.epochMinute("2025-03-10", "12:00") - MissedDoseSweeper.GRACE_MINUTES
+
+        val swept = dao.sweepMissedDoses(cutoff)
+
+        assertEquals(
+            setOf(DoseGenerator.doseUid(1, "2025-03-01", "08:00"), DoseGenerator.doseUid(1, "2025-03-05", "20:00")),
+            swept.map { it.uid }.toSet()
+        )
+        swept.forEach { assertEquals(MedicationStatus.MISSED, dao.getDoseById(it.id)!!.status) }
+        assertEquals(MedicationStatus.PENDING, dao.findDoseByUid(DoseGenerator.doseUid(1, "2025-03-10", "09:00"))!!.status)
+        assertEquals(AdherenceTotals(takenCount = 1, missedCount = 2), dao.getAdherenceTotals().first())
+
+        // Segunda varredura não encontra mais nada
+        assertTrue(dao.sweepMissedDoses(cutoff).isEmpty())
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.medicamentos.data
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Dados vindos da nuvem (tempo real ou sincronização) não sobrescrevem o que tem alteração local
+ * ainda no outbox (ex.: dose confirmada sem rede e tela reaberta antes do envio).
+ */
+@RunWith(AndroidJUnit4::class)
+class PendingOutboxGuardTest {
+
+    @get:Rule
+    val db = InMemoryDatabaseRule()
+
+    private val dao get() = db.treatmentDao
+    private val outboxDao get() = db.database.outboxDao()
+
+    @Test
+    fun realtimeChangeSkipsDoseWithQueuedWrite() = runBlocking {
+        val pending = testDose("2025-03-10", "08:00")
+        dao.insertDoses(listOf(pending))
+        val local = dao.findDoseByUid(pending.uid)!!.copy(status = MedicationStatus.TAKEN)
+        dao.updateDose(local)
+        outboxDao.insert(listOf(Outbox.merge(FirestoreDocs.dosePath(USER, local), FirestoreDocs.dose(local))))
+
+        // Snapshot do servidor ainda com a versão antiga
+        val result = dao.applyRealtimeDoseChanges(USER, listOf(pending), emptyList())
+
+        assertTrue(result.written.isEmpty())
+        assertEquals(MedicationStatus.TAKEN, dao.findDoseByUid(pending.uid)!!.status)
+
+        // Depois do envio (a linha sai do outbox) a nuvem volta a valer
+        outboxDao.deleteByIds(outboxDao.getPending(FirestoreDocs.userPrefix(USER), 10).map { it.id })
+        dao.applyRealtimeDoseChanges(USER, listOf(pending), emptyList())
+        assertEquals(MedicationStatus.PENDING, dao.findDoseByUid(pending.uid)!!.status)
+    }
+
+    @Test
+    fun syncMergeSkipsDoseAndTreatmentWithQueuedWrites() = runBlocking {
+        val remote = Treatment(id = 1, medicationName = "Losartana", dosage = "50mg", frequencyPerDay = 2)
+        val local = remote.copy(dosage = "100mg")
+        dao.insertTreatment(local)
+        val pending = testDose("2025-03-10", "08:00")
+        dao.insertDoses(listOf(pending.copy(status = MedicationStatus.TAKEN)))
+        outboxDao.insert(
+            listOf(
+                Outbox.set(FirestoreDocs.treatmentPath(USER, local.id), FirestoreDocs.treatment(local)),
+                Outbox.merge(FirestoreDocs.dosePath(USER, pending), mapOf("status" to MedicationStatus.TAKEN.name))
+            )
+        )
+
+        dao.mergeRemoteChanges(USER, listOf(remote), listOf(pending))
+
+        assertEquals("100mg", dao.getTreatmentById(1)!!.dosage)
+        assertEquals(MedicationStatus.TAKEN, dao.findDoseByUid(pending.uid)!!.status)
+    }
+
+    private companion object {
+        const val USER = "ana"
+    }
+}
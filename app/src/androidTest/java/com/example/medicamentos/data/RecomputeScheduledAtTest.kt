@@ -0,0 +1,50 @@
+package com.example.medicamentos.data
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.TimeZone
+
+/**
+ * Mudança de fuso: o horário no relógio das doses pendentes continua o mesmo e o instante
+ * (scheduledAt) é recalculado; doses já resolvidas não mudam.
+ */
+@RunWith(AndroidJUnit4::class)
+class RecomputeScheduledAtTest {
+
+    @get:Rule
+    val db = InMemoryDatabaseRule()
+
+    private val dao get() = db.treatmentDao
+    private val originalTimeZone = TimeZone.getDefault()
+
+    @After
+    fun restoreTimeZone() {
+        TimeZone.setDefault(originalTimeZone)
+    }
+
+    private fun dose(time: String, status: MedicationStatus) = testDose("2025-06-10", time, status)
+
+    @Test
+    fun pendingDosesFollowTheNewTimeZone() = runBlocking {
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Sao_Paulo"))
+        dao.insertDoses(listOf(dose("08:00", MedicationStatus.PENDING), dose("07:00", MedicationStatus.TAKEN)))
+        val takenBefore = dao.findDoseByUid(DoseGenerator.doseUid(1, "2025-06-10", "07:00"))!!.scheduledAt
+
+        // Lisboa está 4h à frente de São Paulo em junho
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Lisbon"))
+        val changed = dao.recomputeScheduledAt("2025-06-09") { DoseGenerator.epochMinute(it.date, it.time) }
+
+        assertEquals(1, changed)
+        val pending = dao.findDoseByUid(DoseGenerator.doseUid(1, "2025-06-10", "08:00"))!!
+        assertEquals(DoseGenerator.epochMinute("2025-06-10", "08:00"), pending.scheduledAt)
+        assertEquals(takenBefore, dao.findDoseByUid(DoseGenerator.doseUid(1, "2025-06-10", "07:00"))!!.scheduledAt)
+
+        // Sem mudança de fuso, nada a gravar
+        assertEquals(0, dao.recomputeScheduledAt("2025-06-09") { DoseGenerator.epochMinute(it.date, it.time) })
+    }
+}
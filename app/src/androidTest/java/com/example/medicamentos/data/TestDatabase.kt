@@ -0,0 +1,39 @@
+package com.example.medicamentos.data
+
+import androidx.room.Room
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.rules.ExternalResource
+
+/**
+ * Banco em memória com os triggers de adesão ([AppDatabase.CALLBACK]), como o app abre o seu:
+ * criado antes de cada teste e fechado depois.
+ */
+class InMemoryDatabaseRule : ExternalResource() {
+
+    lateinit var database: AppDatabase
+        private set
+
+    val treatmentDao: TreatmentDao get() = database.treatmentDao()
+    val caregiverDao: CaregiverDao get() = database.caregiverDao()
+
+    override fun before() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase::class.java)
+            .addCallback(AppDatabase.CALLBACK)
+            .build()
+    }
+
+    override fun after() {
+        database.close()
+    }
+}
+
+/** Dose já com scheduledAt e uid preenchidos, como o app grava no Room. */
+fun testDose(
+    date: String,
+    time: String,
+    status: MedicationStatus = MedicationStatus.PENDING,
+    treatmentId: Int = 1
+) = MedicationDose(treatmentId = treatmentId, medicationName = "Medicamento $treatmentId", date = date, time = time, status = status)
+    .withScheduledAt()
+    .withUid()
@@ -23,7 +23,7 @@ import androidx.compose.ui.unit.dp
 import androidx.compose.ui.window.DialogProperties
 import com.example.medicamentos.data.Treatment
 import com.example.medicamentos.ui.theme.MedicamentosTheme
-import java.text.SimpleDateFormat
+import com.example.medicamentos.schedule.DoseSchedule
 import java.util.*
 import androidx.lifecycle.viewmodel.compose.viewModel
 import com.example.medicamentos.data.MedicamentosApplication
@@ -306,18 +306,9 @@ fun AddMedicationScreen(
 
 @Composable
 fun CalculatedTimesPreview(startHour: Int, startMinute: Int, frequency: Int, interval: Int) {
+    // Mesmo cálculo usado para gerar as doses (:schedule-core)
     val times = remember(startHour, startMinute, frequency, interval) {
-        val calendar = Calendar.getInstance()
-        val sdf = SimpleDateFormat("HH:mm", Locale.getDefault())
-        (0 until frequency).map { i ->
-            // Cria uma nova instância do calendário para cada cálculo para não acumular horas
-            val doseCalendar = Calendar.getInstance().apply {
-                set(Calendar.HOUR_OF_DAY, startHour)
-                set(Calendar.MINUTE, startMinute)
-                add(Calendar.HOUR_OF_DAY, i * interval)
-            }
-            sdf.format(doseCalendar.time)
-        }
+        DoseSchedule.dailyTimes(startHour, startMinute, frequency, interval)
     }
 
     Column {
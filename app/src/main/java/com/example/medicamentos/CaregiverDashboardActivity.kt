@@ -0,0 +1,256 @@
+package com.example.medicamentos
+
+import android.content.Context
+import android.content.Intent
+import android.os.Bundle
+import androidx.activity.ComponentActivity
+import androidx.activity.compose.setContent
+import androidx.compose.foundation.clickable
+import androidx.compose.foundation.layout.*
+import androidx.compose.foundation.lazy.LazyColumn
+import androidx.compose.foundation.lazy.items
+import androidx.compose.material.icons.Icons
+import androidx.compose.material.icons.automirrored.filled.Logout
+import androidx.compose.material.icons.filled.Person
+import androidx.compose.material.icons.filled.PersonAdd
+import androidx.compose.material3.*
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.collectAsState
+import androidx.compose.runtime.getValue
+import androidx.compose.ui.Alignment
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.graphics.Color
+import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.text.font.FontWeight
+import androidx.compose.ui.tooling.preview.Preview
+import androidx.compose.ui.unit.dp
+import androidx.lifecycle.viewmodel.compose.viewModel
+import com.example.medicamentos.data.CaregiverDashboardViewModel
+import com.example.medicamentos.data.CaregiverDashboardViewModelFactory
+import com.example.medicamentos.data.CaregiverMirror
+import com.example.medicamentos.data.LinkedPatient
+import com.example.medicamentos.data.LinkedPatients
+import com.example.medicamentos.data.PatientSummaryUi
+import com.example.medicamentos.ui.theme.MedicamentosTheme
+
+class CaregiverDashboardActivity : ComponentActivity() {
+    override fun onCreate(savedInstanceState: Bundle?) {
+        super.onCreate(savedInstanceState)
+
+        val patients = LinkedPatients.all(this)
+
+        setContent {
+            MedicamentosTheme {
+                val viewModel: CaregiverDashboardViewModel =
+                    viewModel(factory = CaregiverDashboardViewModelFactory(application, patients))
+                CaregiverDashboardScreen(viewModel = viewModel)
+            }
+        }
+    }
+}
+
+@OptIn(ExperimentalMaterial3Api::class)
+@Composable
+fun CaregiverDashboardScreen(viewModel: CaregiverDashboardViewModel) {
+    val context = LocalContext.current
+    val summaries by viewModel.summaries.collectAsState()
+    val isLoading by viewModel.isLoading
+
+    Scaffold(
+        topBar = {
+            TopAppBar(
+                title = {
+                    Column(horizontalAlignment = Alignment.Start) {
+                        Text(
+                            text = "Meus Pacientes",
+                            style = MaterialTheme.typography.titleLarge,
+                            fontWeight = FontWeight.Bold,
+                        )
+                        Text(
+                            text = "Modo Cuidador",
+                            style = MaterialTheme.typography.bodyMedium,
+                            color = MaterialTheme.colorScheme.primary
+                        )
+                    }
+                },
+                actions = {
+                    IconButton(
+                        onClick = {
+                            val sharedPreferences = context.getSharedPreferences("AppPreferences", Context.MODE_PRIVATE)
+                            with(sharedPreferences.edit()) {
+                                clear() // Limpa o modo cuidador e os pacientes vinculados
+                                apply()
+                            }
+                            // E a cópia local dos dados dos pacientes
+                            CaregiverMirror.clearAsync(context)
+
+                            val intent = Intent(context, MainActivity::class.java).apply {
+                                flags = Intent.FLAG_ACTIVITY_NEW_TASK or Intent.FLAG_ACTIVITY_CLEAR_TASK
+                            }
+                            context.startActivity(intent)
+                        }
+                    ) {
+                        Icon(
+                            Icons.AutoMirrored.Filled.Logout,
+                            contentDescription = "Sair do Modo Cuidador"
+                        )
+                    }
+                },
+                colors = TopAppBarDefaults.topAppBarColors(
+                    containerColor = MaterialTheme.colorScheme.surfaceContainerLowest
+                )
+            )
+        }
+    ) { innerPadding ->
+        Column(
+            modifier = Modifier
+                .fillMaxSize()
+                .padding(innerPadding)
+                .padding(horizontal = 16.dp)
+        ) {
+            Button(
+                onClick = { context.startActivity(Intent(context, CuidadorScanActivity::class.java)) },
+                modifier = Modifier
+                    .fillMaxWidth()
+                    .padding(vertical = 16.dp)
+            ) {
+                Icon(
+                    Icons.Default.PersonAdd,
+                    contentDescription = null,
+                    modifier = Modifier.size(ButtonDefaults.IconSize)
+                )
+                Spacer(modifier = Modifier.width(ButtonDefaults.IconSpacing))
+                Text("Adicionar Paciente")
+            }
+
+            if (isLoading) {
+                LoadingState()
+            } else {
+                LazyColumn(
+                    modifier = Modifier.fillMaxSize(),
+                    verticalArrangement = Arrangement.spacedBy(8.dp),
+                    contentPadding = PaddingValues(bottom = 16.dp)
+                ) {
+                    items(
+                        items = summaries,
+                        key = { summary -> summary.patient.uid },
+                        contentType = { "patient" }
+                    ) { summary ->
+                        PatientSummaryCard(
+                            summary = summary,
+                            onClick = {
+                                // Passa a ser o paciente aberto ao iniciar o app
+                                val sharedPreferences = context.getSharedPreferences("AppPreferences", Context.MODE_PRIVATE)
+                                with(sharedPreferences.edit()) {
+                                    putString("KEY_PATIENT_UID", summary.patient.uid)
+                                    putString("KEY_PATIENT_NAME", summary.patient.name)
+                                    apply()
+                                }
+                                val intent = Intent(context, CaregiverHomeActivity::class.java).apply {
+                                    putExtra("PATIENT_UID", summary.patient.uid)
+                                    putExtra("PATIENT_NAME", summary.patient.name)
+                                }
+                                context.startActivity(intent)
+                            }
+                        )
+                    }
+                }
+            }
+        }
+    }
+}
+
+@Composable
+fun PatientSummaryCard(
+    summary: PatientSummaryUi,
+    onClick: () -> Unit,
+    modifier: Modifier = Modifier
+) {
+    Card(
+        modifier = modifier
+            .fillMaxWidth()
+            .clickable(onClick = onClick),
+        shape = MaterialTheme.shapes.medium,
+        elevation = CardDefaults.cardElevation(defaultElevation = 2.dp),
+        colors = CardDefaults.cardColors(
+            containerColor = MaterialTheme.colorScheme.surfaceVariant
+        )
+    ) {
+        ListItem(
+            colors = ListItemDefaults.colors(
+                containerColor = Color.Transparent
+            ),
+            leadingContent = {
+                Icon(
+                    imageVector = Icons.Default.Person,
+                    contentDescription = null,
+                    modifier = Modifier.size(40.dp),
+                    tint = MaterialTheme.colorScheme.onSurfaceVariant
+                )
+            },
+            headlineContent = {
+                Text(
+                    text = summary.patient.name,
+                    fontWeight = FontWeight.Bold,
+                    style = MaterialTheme.typography.bodyLarge,
+                    color = MaterialTheme.colorScheme.onSurfaceVariant
+                )
+            },
+            supportingContent = {
+                Column {
+                    Text(
+                        text = if (summary.total == 0) {
+                            "Nenhuma dose hoje"
+                        } else {
+                            "${summary.taken} de ${summary.total} doses tomadas"
+                        },
+                        style = MaterialTheme.typography.bodyMedium,
+                        color = MaterialTheme.colorScheme.onSurfaceVariant
+                    )
+                    summary.nextDose?.let {
+                        Text(
+                            text = "Próxima: $it",
+                            style = MaterialTheme.typography.bodySmall,
+                            color = MaterialTheme.colorScheme.onSurfaceVariant
+                        )
+                    }
+                }
+            },
+            trailingContent = {
+                if (summary.missed > 0) {
+                    Text(
+                        text = "${summary.missed} perdida(s)",
+                        color = MaterialTheme.colorScheme.error,
+                        style = MaterialTheme.typography.labelSmall,
+                        fontWeight = FontWeight.Bold
+                    )
+                } else if (summary.pending > 0) {
+                    Text(
+                        text = "${summary.pending} pendente(s)",
+                        color = Color(0xFFF59E0B),
+                        style = MaterialTheme.typography.labelSmall,
+                        fontWeight = FontWeight.Bold
+                    )
+                }
+            }
+        )
+    }
+}
+
+@Preview(showBackground = true)
+@Composable
+fun PatientSummaryCardPreview() {
+    MedicamentosTheme {
+        PatientSummaryCard(
+            summary = PatientSummaryUi(
+                patient = LinkedPatient("uid", "Maria"),
+                total = 4,
+                taken = 2,
+                pending = 1,
+                missed = 1,
+                nextDose = "20:00 - Paracetamol"
+            ),
+            onClick = {}
+        )
+    }
+}
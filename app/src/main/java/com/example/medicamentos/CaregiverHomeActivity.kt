@@ -13,6 +13,7 @@ import androidx.compose.material.icons.Icons
 import androidx.compose.material.icons.automirrored.filled.ListAlt
 import androidx.compose.material.icons.automirrored.filled.Logout
 import androidx.compose.material.icons.filled.CheckCircle
+import androidx.compose.material.icons.filled.Groups
 import androidx.compose.material.icons.filled.HourglassTop
 import androidx.compose.material.icons.filled.Medication
 import androidx.compose.material.icons.filled.NotificationsOff
@@ -30,10 +31,15 @@ import androidx.compose.ui.text.style.TextAlign
 import androidx.compose.ui.tooling.preview.Preview
 import androidx.compose.ui.unit.dp
 import androidx.lifecycle.viewmodel.compose.viewModel
+import com.example.medicamentos.data.CaregiverMirror
 import com.example.medicamentos.data.CaregiverViewModel
 import com.example.medicamentos.data.CaregiverViewModelFactory
+import com.example.medicamentos.data.DoseGroupUi
+import com.example.medicamentos.data.DoseRowUi
 import com.example.medicamentos.data.MedicationDose
 import com.example.medicamentos.data.MedicationStatus
+import com.example.medicamentos.data.toRowUi
+import kotlinx.collections.immutable.ImmutableList
 import com.example.medicamentos.ui.theme.MedicamentosTheme
 
 class CaregiverHomeActivity : ComponentActivity() {
@@ -49,7 +55,7 @@ class CaregiverHomeActivity : ComponentActivity() {
 
         setContent {
             MedicamentosTheme {
-                val viewModel: CaregiverViewModel = viewModel(factory = CaregiverViewModelFactory())
+                val viewModel: CaregiverViewModel = viewModel(factory = CaregiverViewModelFactory(application))
 
                 LaunchedEffect(patientUid) {
                     if (patientUid != null) {
@@ -71,7 +77,7 @@ fun CaregiverHomeScreen(
     patientName: String
 ) {
     val context = LocalContext.current
-    val todayDoses by viewModel.doses.collectAsState()
+    val doseGroups by viewModel.doseGroups.collectAsState()
     val isLoading by viewModel.isLoading
 
     Scaffold(
@@ -92,6 +98,20 @@ fun CaregiverHomeScreen(
                     }
                 },
                 actions = {
+                    IconButton(
+                        onClick = {
+                            // A tela do cuidador bloqueia o "voltar": o painel abre como nova raiz
+                            val intent = Intent(context, CaregiverDashboardActivity::class.java).apply {
+                                flags = Intent.FLAG_ACTIVITY_NEW_TASK or Intent.FLAG_ACTIVITY_CLEAR_TASK
+                            }
+                            context.startActivity(intent)
+                        }
+                    ) {
+                        Icon(
+                            Icons.Default.Groups,
+                            contentDescription = "Todos os pacientes"
+                        )
+                    }
                     IconButton(
                         onClick = {
 
@@ -100,6 +120,8 @@ fun CaregiverHomeScreen(
                                 clear() // Limpa todos os dados salvos (is_caregiver_mode, patient_uid, etc.)
                                 apply()
                             }
+                            // E a cópia local dos dados dos pacientes
+                            CaregiverMirror.clearAsync(context)
 
                             val intent = Intent(context, MainActivity::class.java).apply {
                                 flags = Intent.FLAG_ACTIVITY_NEW_TASK or Intent.FLAG_ACTIVITY_CLEAR_TASK
@@ -146,22 +168,22 @@ fun CaregiverHomeScreen(
             }
 
             when {
-                isLoading && todayDoses.isEmpty() -> LoadingState()
-                todayDoses.isEmpty() -> EmptyState()
-                else -> MedicationList(todayDoses)
+                isLoading && doseGroups.isEmpty() -> LoadingState()
+                doseGroups.isEmpty() -> EmptyState()
+                else -> MedicationList(doseGroups)
             }
         }
     }
 }
 
 @Composable
-private fun MedicationList(doses: List<MedicationDose>) {
+private fun MedicationList(doseGroups: ImmutableList<DoseGroupUi>) {
     LazyColumn(
-        modifier = Modifier.fillMaxSize(),
+        modifier = Modifier.fillMaxSize().benchmarkTag(TAG_CAREGIVER_DOSE_LIST),
         verticalArrangement = Arrangement.spacedBy(8.dp),
         contentPadding = PaddingValues(bottom = 16.dp)
     ) {
-        item {
+        item(key = "title", contentType = "title") {
             Text(
                 "Medicamentos de Hoje",
                 style = MaterialTheme.typography.titleMedium,
@@ -170,13 +192,11 @@ private fun MedicationList(doses: List<MedicationDose>) {
             )
         }
 
-        val groupedMedications = doses.sortedBy { it.time }.groupBy { it.time }
-
-        groupedMedications.forEach { (time, medsInTime) ->
-            item {
+        doseGroups.forEach { group ->
+            item(key = "time_${group.time}", contentType = "time_header") {
                 Column {
                     Text(
-                        text = time,
+                        text = group.time,
                         style = MaterialTheme.typography.headlineSmall,
                         fontWeight = FontWeight.Bold,
                         color = MaterialTheme.colorScheme.primary,
@@ -185,8 +205,12 @@ private fun MedicationList(doses: List<MedicationDose>) {
                     HorizontalDivider()
                 }
             }
-            items(medsInTime) { medicationDose ->
-                CaregiverMedicationCard(medication = medicationDose)
+            items(
+                items = group.doses,
+                key = { row -> row.uid },
+                contentType = { "dose" }
+            ) { row ->
+                CaregiverMedicationCard(medication = row)
             }
         }
     }
@@ -248,7 +272,7 @@ fun EmptyState() {
 // ✨ AQUI ESTÁ A MUDANÇA NA COR DO CARD ✨
 @Composable
 fun CaregiverMedicationCard(
-    medication: MedicationDose,
+    medication: DoseRowUi,
     modifier: Modifier = Modifier
 ) {
     val isPending = medication.status == MedicationStatus.PENDING
@@ -333,7 +357,7 @@ fun CaregiverMedicationCardPreview() {
                     status = MedicationStatus.PENDING,
                     time = "08:00",
                     date = "2025-09-30"
-                )
+                ).toRowUi()
             )
             CaregiverMedicationCard(
                 medication = MedicationDose(
@@ -342,7 +366,7 @@ fun CaregiverMedicationCardPreview() {
                     status = MedicationStatus.TAKEN,
                     time = "12:00",
                     date = "2025-09-30"
-                )
+                ).toRowUi()
             )
         }
     }
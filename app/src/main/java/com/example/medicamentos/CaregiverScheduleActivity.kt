@@ -1,5 +1,6 @@
 package com.example.medicamentos
 
+import android.app.Application
 import android.os.Bundle
 import androidx.activity.ComponentActivity
 import androidx.activity.compose.setContent
@@ -17,6 +18,7 @@ import androidx.compose.runtime.getValue
 import androidx.compose.ui.Alignment
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.graphics.Color
+import androidx.compose.ui.platform.LocalContext
 import androidx.compose.ui.text.font.FontWeight
 import androidx.compose.ui.text.style.TextAlign
 import androidx.compose.ui.tooling.preview.Preview
@@ -35,7 +37,7 @@ class CaregiverScheduleActivity : ComponentActivity() {
 
         setContent {
             MedicamentosTheme {
-                val viewModel: CaregiverViewModel = viewModel(factory = CaregiverViewModelFactory())
+                val viewModel: CaregiverViewModel = viewModel(factory = CaregiverViewModelFactory(application))
 
                 CaregiverScheduleScreen(
                     patientName = patientName,
@@ -113,7 +115,7 @@ fun CaregiverScheduleScreen(
                         contentPadding = PaddingValues(horizontal = 16.dp, vertical = 8.dp),
                         verticalArrangement = Arrangement.spacedBy(12.dp)
                     ) {
-                        items(treatments) { treatment ->
+                        items(treatments, key = { it.id }, contentType = { "treatment" }) { treatment ->
                             TreatmentCard(treatment = treatment)
                         }
                     }
@@ -178,7 +180,9 @@ fun EmptyState(patientName: String) {
 fun CaregiverScheduleScreenPreview() {
     MedicamentosTheme {
         // Mock ViewModel para o preview
-        val mockViewModel: CaregiverViewModel = viewModel(factory = CaregiverViewModelFactory())
+        val mockViewModel: CaregiverViewModel = viewModel(
+            factory = CaregiverViewModelFactory(LocalContext.current.applicationContext as Application)
+        )
         // Forçar estado de lista vazia para o preview
         // mockViewModel.treatments.value = emptyList()
 
@@ -28,6 +28,8 @@ import androidx.compose.ui.viewinterop.AndroidView
 import androidx.core.content.ContextCompat
 import androidx.lifecycle.Lifecycle
 import androidx.lifecycle.LifecycleEventObserver
+import com.example.medicamentos.data.LinkedPatient
+import com.example.medicamentos.data.LinkedPatients
 import com.example.medicamentos.ui.theme.MedicamentosTheme
 // ADICIONE ESTAS IMPORTAÇÕES
 import com.google.firebase.firestore.ktx.firestore
@@ -100,6 +102,8 @@ class CuidadorScanActivity : ComponentActivity() {
                         putString("KEY_PATIENT_NAME", patientName)
                         apply() // Salva as alterações
                     }
+                    // Um cuidador pode acompanhar vários pacientes (ver CaregiverDashboardActivity)
+                    LinkedPatients.add(this, LinkedPatient(patientUid, patientName))
 
                     // Navega para a tela do cuidador com os dados corretos
                     val intent = Intent(this, CaregiverHomeActivity::class.java).apply {
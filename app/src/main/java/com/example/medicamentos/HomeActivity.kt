@@ -13,6 +13,7 @@ import android.speech.RecognizerIntent
 import android.util.Log
 import android.widget.Toast
 import androidx.activity.ComponentActivity
+import androidx.activity.compose.ReportDrawnWhen
 import androidx.activity.compose.rememberLauncherForActivityResult
 import androidx.activity.compose.setContent
 import androidx.activity.result.contract.ActivityResultContracts
@@ -37,11 +38,13 @@ import androidx.compose.ui.unit.dp
 import androidx.compose.ui.unit.sp
 import androidx.core.content.ContextCompat
 import androidx.core.view.WindowCompat
+import androidx.lifecycle.lifecycleScope
 import androidx.lifecycle.viewmodel.compose.viewModel
 import com.example.medicamentos.data.*
 import com.example.medicamentos.ui.theme.MedicamentosTheme
 import com.google.firebase.auth.ktx.auth
 import com.google.firebase.ktx.Firebase
+import kotlinx.coroutines.launch
 import java.text.SimpleDateFormat
 import java.util.*
 import androidx.activity.result.ActivityResultLauncher
@@ -49,15 +52,17 @@ import com.example.medicamentos.data.MedicationDose
 import com.example.medicamentos.data.MedicationStatus
 import com.example.medicamentos.data.TreatmentViewModel
 import com.example.medicamentos.data.TreatmentViewModelFactory
-import kotlinx.coroutines.delay
-import java.util.concurrent.TimeUnit
 
 class HomeActivity : ComponentActivity() {
 
     private lateinit var addMedicationLauncher: ActivityResultLauncher<Intent>
 
-    override fun onCreate(savedInstanceState: Bundle?) {
+    override fun onCreate(savedInstanceState: Bundle?) = traced("startup:home-onCreate") {
         super.onCreate(savedInstanceState)
+        AppStartup.openDatabase(this)
+
+        // Quando a lista do dia estiver desenhada (ReportDrawnWhen no HomeScreen), libera a etapa adiada
+        fullyDrawnReporter.addOnReportDrawnListener { AppStartup.onFullyDrawn() }
 
         addMedicationLauncher = registerForActivityResult(ActivityResultContracts.StartActivityForResult()) {
 
@@ -74,18 +79,25 @@ class HomeActivity : ComponentActivity() {
             val currentUser = Firebase.auth.currentUser?.uid
             var lastSyncedUser by remember { mutableStateOf<String?>(null) }
 
+            // Rede, listener e permissões só depois da primeira tela (desenhada a partir do Room)
             LaunchedEffect(currentUser) {
                 if (currentUser != null && currentUser != lastSyncedUser) {
+                    AppStartup.awaitFullyDrawn()
                     Log.d("HomeActivity", "Sincronizando para novo usuário: $currentUser")
+                    // Escritas deixadas no outbox por um logout anterior desta conta
+                    Outbox.scheduleFlush(this@HomeActivity)
                     viewModel.syncDataFromFirestore()
                     lastSyncedUser = currentUser
                 }
             }
             LaunchedEffect(Unit) {
-                viewModel.startRealtimeSync() // Inicia sincronização em tempo real
+                AppStartup.awaitFullyDrawn()
+                // Sincronização em tempo real enquanto a tela estiver visível (um listener por processo)
+                RealtimeDoseSync.bind(this@HomeActivity, this@HomeActivity)
             }
 
             LaunchedEffect(Unit) {
+                AppStartup.awaitFullyDrawn()
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
                     val alarmManager = getSystemService(ALARM_SERVICE) as AlarmManager
                     if (!alarmManager.canScheduleExactAlarms()) {
@@ -104,50 +116,46 @@ class HomeActivity : ComponentActivity() {
             }
         }
     }
+
+    override fun onStart() {
+        super.onStart()
+        // Ao abrir (ou voltar para) o app, fecha as doses que passaram do prazo; na abertura fria, só depois da primeira tela
+        lifecycleScope.launch {
+            AppStartup.awaitFullyDrawn()
+            MissedDoseSweeper.sweepAsync(this@HomeActivity)
+        }
+    }
 }
 
 // ----- COMPONENTES DA UI -----
 
+// Janela em que os botões de uma dose ficam habilitados, em minutos relativos ao horário agendado
+private const val BUTTONS_ENABLED_BEFORE_MINUTES = 10
+private const val BUTTONS_ENABLED_AFTER_MINUTES = 240
+
+// Tipos de item da lista de doses (o LazyColumn reaproveita composições do mesmo tipo)
+private const val CONTENT_TYPE_TIME_HEADER = "time_header"
+private const val CONTENT_TYPE_DOSE = "dose"
+
 @Composable
 fun MedicationCard(
-    medication: MedicationDose,
-    onMedicationTaken: (MedicationDose) -> Unit,
-    onMedicationPostponed: (MedicationDose) -> Unit,
-    onDeleteDose: (MedicationDose) -> Unit
+    medication: DoseRowUi,
+    onMedicationTaken: (DoseRowUi) -> Unit,
+    onMedicationPostponed: (DoseRowUi) -> Unit,
+    onDeleteDose: (DoseRowUi) -> Unit
 ) {
 
-    var buttonsEnabled by remember { mutableStateOf(false) }
-
-    // 2. Efeito que roda continuamente para verificar a hora
-    LaunchedEffect(key1 = medication.id) {
-        while (true) {
-            try {
-                // Pega a hora agendada da dose
-                val sdf = SimpleDateFormat("HH:mm", Locale.getDefault())
-                val scheduledTime = Calendar.getInstance().apply {
-                    val timeParts = medication.time.split(":")
-                    set(Calendar.HOUR_OF_DAY, timeParts[0].toInt())
-                    set(Calendar.MINUTE, timeParts[1].toInt())
-                    set(Calendar.SECOND, 0)
-                }
-
-                // Pega a hora atual
-                val currentTime = Calendar.getInstance()
-
-                // Calcula a diferença em minutos
-                val diffInMillis = scheduledTime.timeInMillis - currentTime.timeInMillis
-                val diffInMinutes = TimeUnit.MILLISECONDS.toMinutes(diffInMillis)
-
-                // 3. Define a regra: habilitar 10 minutos antes e até 4 horas depois
-                buttonsEnabled = diffInMinutes <= 10 && diffInMinutes > -240 // (de +10 min até -240 min)
-
-            } catch (e: Exception) {
-                // Em caso de erro de parsing de data, mantém os botões desabilitados
-                buttonsEnabled = false
-            }
-
-            // 4. Pausa por um minuto antes de verificar novamente
-            delay(60000) // 60000 milissegundos = 1 minuto
+    // Horário da dose já em minutos (convertido no ViewModel, ver [toRowUi])
+    val scheduledAt = medication.scheduledAt
+    val currentMinute = MinuteClock.currentMinute.collectAsState()
+
+    // Regra: habilitar 10 minutos antes e até 4 horas depois do horário.
+    // derivedStateOf só recompõe o card quando o resultado muda, não a cada minuto.
+    val buttonsEnabled by remember(scheduledAt) {
+        derivedStateOf {
+            scheduledAt > 0 &&
+                currentMinute.value >= scheduledAt - BUTTONS_ENABLED_BEFORE_MINUTES &&
+                currentMinute.value < scheduledAt + BUTTONS_ENABLED_AFTER_MINUTES
         }
     }
 
@@ -248,9 +256,9 @@ private fun processVoiceCommand(
     onStepChange: (VoiceConversationStep) -> Unit,
     medicationData: MutableMap<String, String>,
     // Parâmetros antigos
-    doses: List<MedicationDose>,
-    onMedicationTaken: (MedicationDose) -> Unit,
-    onMedicationPostponed: (MedicationDose) -> Unit,
+    doses: List<DoseRowUi>,
+    onMedicationTaken: (DoseRowUi) -> Unit,
+    onMedicationPostponed: (DoseRowUi) -> Unit,
     context: Context,
     addMedicationLauncher: ActivityResultLauncher<Intent>
 ) {
@@ -349,53 +357,39 @@ fun HomeScreen(
     val sdf = SimpleDateFormat("yyyy-MM-dd", Locale.getDefault())
     val todayStr = sdf.format(Date())
 
-    // A UI lê a lista de doses do dia diretamente do banco de dados (via ViewModel).
-    val medicationDoses by viewModel.getDosesForDate(todayStr).collectAsState(initial = emptyList())
+    // A UI lê as doses do dia já agrupadas pelo ViewModel (fora da thread principal)
+    val todayDoses by viewModel.todayDoses.collectAsState()
+    val medicationDoses = todayDoses.doses
 
-    val onMedicationTaken: (MedicationDose) -> Unit = { doseToUpdate ->
-        viewModel.updateDose(
-            doseToUpdate.copy(
-                status = MedicationStatus.TAKEN,
-                takenTimestamp = System.currentTimeMillis()
-            )
-        )
-        Toast.makeText(context, "${doseToUpdate.medicationName} confirmado!", Toast.LENGTH_SHORT).show()
-    }
-    val onMedicationPostponed: (MedicationDose) -> Unit = { doseToUpdate ->
+    // TTFD: a tela está completa assim que as doses de hoje foram lidas do Room
+    ReportDrawnWhen { todayDoses.loaded }
 
-        if (doseToUpdate.postponeCount < 2) {
-            Log.d(
-                "AdiarDebug",
-                "ANTES - ID: ${doseToUpdate.id}, Horário: ${doseToUpdate.time}, Medicamento: ${doseToUpdate.medicationName}"
-            )
-
-            val calendar = Calendar.getInstance()
-            val timeSdf = SimpleDateFormat("HH:mm", Locale.getDefault())
-            calendar.time = timeSdf.parse(doseToUpdate.time) ?: Date()
-            calendar.add(Calendar.MINUTE, 15)
-            val newTime = timeSdf.format(calendar.time)
+    // Callbacks lembrados: a mesma instância entre recomposições deixa os cards serem pulados
+    // Os cards só têm o DoseRowUi: o ViewModel relê a dose do Room pelo id
+    val scope = rememberCoroutineScope()
+    val onMedicationTaken: (DoseRowUi) -> Unit = remember(viewModel, context) { { doseToUpdate ->
+        viewModel.markDoseTaken(doseToUpdate.id)
+        Toast.makeText(context, "${doseToUpdate.medicationName} confirmado!", Toast.LENGTH_SHORT).show()
+    } }
+    val onMedicationPostponed: (DoseRowUi) -> Unit = remember(viewModel, context, scope) { { doseToUpdate -> scope.launch {
 
+        val updatedDose = viewModel.postponeDose(doseToUpdate.id)
+        if (updatedDose != null) {
             Log.d(
                 "AdiarDebug",
-                "DEPOIS - ID: ${doseToUpdate.id}, Novo Horário: $newTime, Medicamento: ${doseToUpdate.medicationName}"
-            )
-
-            val updatedDose = doseToUpdate.copy(
-                time = newTime,
-                status = MedicationStatus.PENDING,
-                postponeCount = doseToUpdate.postponeCount + 1
+                "ID: ${doseToUpdate.id}, Horário: ${doseToUpdate.time} -> ${updatedDose.time}, Medicamento: ${doseToUpdate.medicationName}"
             )
 
-            viewModel.updateDose(updatedDose)
             Toast.makeText(
                 context,
-                "${doseToUpdate.medicationName} adiado para $newTime!",
+                "${doseToUpdate.medicationName} adiado para ${updatedDose.time}!",
                 Toast.LENGTH_SHORT
             ).show()
         } else {
             Toast.makeText(context, "Limite de adiamentos atingido para esta dose.", Toast.LENGTH_SHORT).show()
         }
-    }
+    } } }
+    val onDeleteDose: (DoseRowUi) -> Unit = remember(viewModel) { { dose -> viewModel.deleteDose(dose.id) } }
 
     var showVoiceHelpDialog by remember { mutableStateOf(false) }
 
@@ -523,6 +517,7 @@ fun HomeScreen(
     )
 
     LaunchedEffect(Unit) {
+        AppStartup.awaitFullyDrawn()
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
             if (ContextCompat.checkSelfPermission(context, Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
                 notificationPermissionLauncher.launch(Manifest.permission.POST_NOTIFICATIONS)
@@ -600,9 +595,10 @@ fun HomeScreen(
                 }
             }
 
-            val groupedMedications = medicationDoses.sortedBy { it.time }.groupBy { it.time }
-
-            if (medicationDoses.isEmpty()) {
+            if (!todayDoses.loaded) {
+                // Primeira leitura do Room ainda em andamento: não pisca a mensagem de lista vazia
+                Spacer(modifier = Modifier.fillMaxSize())
+            } else if (medicationDoses.isEmpty()) {
                 Box(
                     modifier = Modifier.fillMaxSize(),
                     contentAlignment = Alignment.Center
@@ -616,24 +612,28 @@ fun HomeScreen(
                 }
             } else {
                 LazyColumn(
-                    modifier = Modifier.fillMaxSize().padding(horizontal = 16.dp),
+                    modifier = Modifier.fillMaxSize().padding(horizontal = 16.dp).benchmarkTag(TAG_HOME_DOSE_LIST),
                     contentPadding = PaddingValues(bottom = 100.dp)
                 ) {
-                    groupedMedications.forEach { (time, medsInTime) ->
-                        item {
+                    todayDoses.groups.forEach { group ->
+                        item(key = "time_${group.time}", contentType = CONTENT_TYPE_TIME_HEADER) {
                             Text(
-                                text = time,
+                                text = group.time,
                                 style = MaterialTheme.typography.headlineLarge,
                                 fontWeight = FontWeight.Bold,
                                 modifier = Modifier.padding(top = 16.dp, bottom = 8.dp)
                             )
                         }
-                        items(medsInTime) { dose ->
+                        items(
+                            items = group.doses,
+                            key = { row -> row.id },
+                            contentType = { CONTENT_TYPE_DOSE }
+                        ) { row ->
                             MedicationCard(
-                                medication = dose,
+                                medication = row,
                                 onMedicationTaken = onMedicationTaken,
                                 onMedicationPostponed = onMedicationPostponed,
-                                onDeleteDose = { viewModel.deleteDose(it) }
+                                onDeleteDose = onDeleteDose
                             )
                         }
                     }
@@ -26,6 +26,8 @@ import androidx.compose.ui.tooling.preview.Preview
 import androidx.compose.ui.unit.dp
 import androidx.lifecycle.Lifecycle
 import androidx.lifecycle.LifecycleEventObserver
+import com.example.medicamentos.data.AppStartup
+import com.example.medicamentos.data.LinkedPatients
 import com.example.medicamentos.ui.theme.MedicamentosTheme
 import com.google.android.gms.auth.api.signin.GoogleSignIn
 import com.google.android.gms.auth.api.signin.GoogleSignInOptions
@@ -41,6 +43,8 @@ class MainActivity : ComponentActivity() {
     private lateinit var auth: FirebaseAuth
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
+        // Adianta a abertura do Room enquanto decide qual tela mostrar
+        AppStartup.openDatabase(this)
         auth = Firebase.auth
 
         val sharedPreferences = getSharedPreferences("AppPreferences", MODE_PRIVATE)
@@ -51,6 +55,13 @@ class MainActivity : ComponentActivity() {
             val patientUid = sharedPreferences.getString("KEY_PATIENT_UID", null)
             val patientName = sharedPreferences.getString("KEY_PATIENT_NAME", "Paciente")
 
+            if (LinkedPatients.all(this).size > 1) {
+                // Vários pacientes vinculados: abre o painel com todos eles
+                startActivity(Intent(this, CaregiverDashboardActivity::class.java))
+                finish()
+                return
+            }
+
             if (patientUid != null) {
                 val intent = Intent(this, CaregiverHomeActivity::class.java).apply {
                     putExtra("PATIENT_UID", patientUid)
@@ -5,7 +5,6 @@ import androidx.activity.ComponentActivity
 import androidx.activity.compose.setContent
 import androidx.compose.foundation.layout.*
 import androidx.compose.foundation.lazy.LazyColumn
-import androidx.compose.foundation.lazy.items
 import androidx.compose.material.icons.Icons
 import androidx.compose.material.icons.filled.ArrowBack
 import androidx.compose.material.icons.filled.CheckCircle
@@ -25,18 +24,22 @@ import androidx.lifecycle.ViewModel
 import androidx.lifecycle.ViewModelProvider
 import androidx.lifecycle.viewModelScope
 import androidx.lifecycle.viewmodel.compose.viewModel
+import androidx.paging.LoadState
+import androidx.paging.Pager
+import androidx.paging.PagingConfig
+import androidx.paging.PagingData
+import androidx.paging.cachedIn
+import androidx.paging.map
+import androidx.paging.compose.collectAsLazyPagingItems
+import androidx.paging.compose.itemKey
+import androidx.room.InvalidationTracker
 import com.example.medicamentos.data.*
 import com.example.medicamentos.data.TreatmentDao
 import com.example.medicamentos.data.MedicationDose
 import com.example.medicamentos.data.MedicationStatus
 import com.example.medicamentos.ui.theme.MedicamentosTheme
 import kotlinx.coroutines.flow.Flow
-import kotlinx.coroutines.flow.SharingStarted
 import kotlinx.coroutines.flow.map
-import kotlinx.coroutines.flow.stateIn
-import java.text.SimpleDateFormat
-import java.util.Locale
-import java.util.concurrent.TimeUnit
 
 // 1. A Activity
 class ReportActivity : ComponentActivity() {
@@ -46,7 +49,7 @@ class ReportActivity : ComponentActivity() {
             val app = application as MedicamentosApplication
             // Usamos a factory para criar o ViewModel com o DAO
             val viewModel: ReportViewModel = viewModel(
-                factory = ReportViewModelFactory(app.database.treatmentDao())
+                factory = ReportViewModelFactory(app.database.treatmentDao(), app.database.invalidationTracker)
             )
             MedicamentosTheme {
                 ReportScreen(
@@ -65,43 +68,49 @@ data class ReportStats(
 )
 
 // 2. O ViewModel (bem simples)
-class ReportViewModel(dao: TreatmentDao) : ViewModel() {
-    private val doseHistory: Flow<List<MedicationDose>> = dao.getPastDosesHistory()
+class ReportViewModel(dao: TreatmentDao, invalidationTracker: InvalidationTracker) : ViewModel() {
 
-    val reportStats: Flow<ReportStats> = doseHistory.map { history ->
-        if (history.isEmpty()) return@map ReportStats()
-
-        val takenCount = history.count { it.status == MedicationStatus.TAKEN }
-        val missedCount = history.count { it.status == MedicationStatus.MISSED }
-        val totalPast = takenCount + missedCount
+    // Um único SUM na tabela agregada: atualizar uma dose não relê o histórico inteiro
+    val reportStats: Flow<ReportStats> = dao.getAdherenceTotals().map { totals ->
+        val totalPast = totals.takenCount + totals.missedCount
 
         val compliance = if (totalPast > 0) {
-            (takenCount.toDouble() / totalPast.toDouble()) * 100
+            (totals.takenCount.toDouble() / totalPast.toDouble()) * 100
         } else {
             100.0 // Se não há doses passadas, a adesão é 100%
         }
 
         ReportStats(
             compliancePercentage = compliance,
-            takenCount = takenCount,
-            missedCount = missedCount
+            takenCount = totals.takenCount,
+            missedCount = totals.missedCount
         )
     }
 
-    // Expõe o histórico para a lista
-    val historyItems = doseHistory.stateIn(
-        scope = viewModelScope,
-        started = SharingStarted.WhileSubscribed(5000),
-        initialValue = emptyList()
-    )
+    // Expõe o histórico para a lista, carregado em páginas conforme a rolagem
+    // Cada página é convertida em modelos imutáveis antes de chegar à UI
+    val historyItems: Flow<PagingData<DoseRowUi>> = Pager(
+        config = PagingConfig(pageSize = HISTORY_PAGE_SIZE, enablePlaceholders = true)
+    ) {
+        DoseHistoryPagingSource(dao, invalidationTracker)
+    }.flow
+        .map { page -> page.map { it.toRowUi() } }
+        .cachedIn(viewModelScope)
+
+    private companion object {
+        const val HISTORY_PAGE_SIZE = 30
+    }
 }
 
 // 3. A Factory para o ViewModel
-class ReportViewModelFactory(private val dao: TreatmentDao) : ViewModelProvider.Factory {
+class ReportViewModelFactory(
+    private val dao: TreatmentDao,
+    private val invalidationTracker: InvalidationTracker
+) : ViewModelProvider.Factory {
     override fun <T : ViewModel> create(modelClass: Class<T>): T {
         if (modelClass.isAssignableFrom(ReportViewModel::class.java)) {
             @Suppress("UNCHECKED_CAST")
-            return ReportViewModel(dao) as T
+            return ReportViewModel(dao, invalidationTracker) as T
         }
         throw IllegalArgumentException("Unknown ViewModel class")
     }
@@ -111,7 +120,7 @@ class ReportViewModelFactory(private val dao: TreatmentDao) : ViewModelProvider.
 @OptIn(ExperimentalMaterial3Api::class)
 @Composable
 fun ReportScreen(viewModel: ReportViewModel, onNavigateBack: () -> Unit) {
-    val historyItems by viewModel.historyItems.collectAsState()
+    val historyItems = viewModel.historyItems.collectAsLazyPagingItems()
     val stats by viewModel.reportStats.collectAsState(initial = ReportStats())
 
     Scaffold(
@@ -131,14 +140,27 @@ fun ReportScreen(viewModel: ReportViewModel, onNavigateBack: () -> Unit) {
             Text("Histórico de Doses", style = MaterialTheme.typography.titleLarge, modifier = Modifier.fillMaxWidth())
             Spacer(modifier = Modifier.height(8.dp))
 
-            if (historyItems.isEmpty()) {
+            if (historyItems.itemCount == 0 && historyItems.loadState.refresh is LoadState.NotLoading) {
                 Box(modifier = Modifier.fillMaxSize(), contentAlignment = Alignment.Center) {
                     Text("Nenhuma dose foi confirmada ou esquecida ainda.")
                 }
             } else {
-                LazyColumn(verticalArrangement = Arrangement.spacedBy(8.dp)) {
-                    items(historyItems) { dose ->
-                        DoseHistoryItem(dose = dose)
+                LazyColumn(
+                    modifier = Modifier.benchmarkTag(TAG_REPORT_HISTORY_LIST),
+                    verticalArrangement = Arrangement.spacedBy(8.dp)
+                ) {
+                    items(
+                        count = historyItems.itemCount,
+                        key = historyItems.itemKey { it.id },
+                        contentType = { "dose" }
+                    ) { index ->
+                        val dose = historyItems[index]
+                        if (dose != null) {
+                            DoseHistoryItem(dose = dose)
+                        } else {
+                            // Placeholder enquanto a página ainda não foi carregada
+                            DoseHistoryPlaceholder()
+                        }
                     }
                 }
             }
@@ -175,7 +197,7 @@ fun ReportStatsCard(stats: ReportStats) {
 }
 
 @Composable
-fun DoseHistoryItem(dose: MedicationDose) {
+fun DoseHistoryItem(dose: DoseRowUi) {
     val statusColor = when (dose.status) {
         MedicationStatus.TAKEN -> MaterialTheme.colorScheme.primary
         MedicationStatus.MISSED -> MaterialTheme.colorScheme.error
@@ -187,33 +209,20 @@ fun DoseHistoryItem(dose: MedicationDose) {
         else -> Icons.Default.HelpOutline // Ícone para um estado inesperado
     }
 
-    // --- LÓGICA PARA CALCULAR O ATRASO ---
+    // --- ATRASO (já calculado no modelo, ver [toRowUi]) ---
     var atrasoInfo: String? = null
+    val diffInMinutes = dose.lateMinutes
 
-    if (dose.status == MedicationStatus.TAKEN && dose.takenTimestamp != null) {
-        try {
-            // Converte a data e hora agendada para um timestamp
-            val sdf = SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault())
-            val scheduledTime = sdf.parse("${dose.date} ${dose.time}")?.time ?: 0
-
-            // Calcula a diferença em minutos
-            val diffInMillis = dose.takenTimestamp!! - scheduledTime
-            val diffInMinutes = TimeUnit.MILLISECONDS.toMinutes(diffInMillis)
-
-            if (diffInMinutes > 5) {
-                if (diffInMinutes <= 60) {
-                    // Se for até 60 minutos, mostra em minutos
-                    atrasoInfo = "Tomado com ${diffInMinutes}min de atraso"
-                } else {
-                    // Se for mais de 60 minutos, calcula horas e minutos
-                    val hours = diffInMinutes / 60
-                    val minutes = diffInMinutes % 60
-                    // O formato "%02d" garante o zero à esquerda (ex: 02, 09)
-                    atrasoInfo = "Tomado com ${hours}:${String.format("%02d", minutes)}h de atraso"
-                }
-            }
-        } catch (e: Exception) {
-            // Ignora erros de parsing de data
+    if (diffInMinutes != null && diffInMinutes > 5) {
+        if (diffInMinutes <= 60) {
+            // Se for até 60 minutos, mostra em minutos
+            atrasoInfo = "Tomado com ${diffInMinutes}min de atraso"
+        } else {
+            // Se for mais de 60 minutos, calcula horas e minutos
+            val hours = diffInMinutes / 60
+            val minutes = diffInMinutes % 60
+            // O formato "%02d" garante o zero à esquerda (ex: 02, 09)
+            atrasoInfo = "Tomado com ${hours}:${String.format("%02d", minutes)}h de atraso"
         }
     }
 
@@ -248,6 +257,16 @@ fun DoseHistoryItem(dose: MedicationDose) {
     }
 }
 
+@Composable
+fun DoseHistoryPlaceholder() {
+    Card(
+        modifier = Modifier
+            .fillMaxWidth()
+            .height(72.dp),
+        colors = CardDefaults.cardColors(containerColor = MaterialTheme.colorScheme.surfaceVariant.copy(alpha = 0.5f))
+    ) {}
+}
+
 // 5. O item da lista
 @Composable
 fun TakenDoseItem(dose: MedicationDose) {
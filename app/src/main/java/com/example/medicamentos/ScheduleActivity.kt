@@ -134,7 +134,7 @@ fun ScheduleScreen(
                             modifier = Modifier.padding(bottom = 8.dp)
                         )
                     }
-                    items(ongoingTreatments) { treatment ->
+                    items(ongoingTreatments, key = { it.id }, contentType = { "treatment" }) { treatment ->
                         TreatmentCard(
                             treatment = treatment,
                             onDelete = { onDeleteTreatment(it) }
@@ -152,7 +152,7 @@ fun ScheduleScreen(
                             modifier = Modifier.padding(top = 24.dp, bottom = 8.dp)
                         )
                     }
-                    items(completedTreatments) { treatment ->
+                    items(completedTreatments, key = { it.id }, contentType = { "treatment" }) { treatment ->
                         TreatmentCard(
                             treatment = treatment,
                             onDelete = { onDeleteTreatment(it) }
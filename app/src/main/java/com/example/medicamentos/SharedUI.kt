@@ -23,6 +23,9 @@ import androidx.compose.ui.Modifier
 import androidx.compose.ui.draw.clip
 import androidx.compose.ui.graphics.Color
 import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.platform.testTag
+import androidx.compose.ui.semantics.semantics
+import androidx.compose.ui.semantics.testTagsAsResourceId
 import androidx.compose.ui.text.font.FontWeight
 import androidx.compose.ui.text.input.KeyboardType
 import androidx.compose.ui.text.input.PasswordVisualTransformation
@@ -35,6 +38,17 @@ import com.example.medicamentos.data.MedicationStatus
 import com.example.medicamentos.data.Treatment
 
 
+// Tags das listas usadas pelo módulo :macrobenchmark (UiAutomator as encontra como resource-id)
+const val TAG_HOME_DOSE_LIST = "home_dose_list"
+const val TAG_REPORT_HISTORY_LIST = "report_history_list"
+const val TAG_CAREGIVER_DOSE_LIST = "caregiver_dose_list"
+
+/**
+ * Expõe a tag como resource-id para que os benchmarks consigam localizar a lista.
+ */
+fun Modifier.benchmarkTag(tag: String): Modifier =
+    semantics { testTagsAsResourceId = true }.testTag(tag)
+
 /**
  * Barra de navegação reutilizável para todo o app.
  */
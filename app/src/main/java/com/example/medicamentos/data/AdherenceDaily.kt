@@ -0,0 +1,75 @@
+package com.example.medicamentos.data
+
+import androidx.room.Entity
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/**
+ * Contagem de doses tomadas e perdidas por dia e por tratamento.
+ *
+ * A tabela não é escrita pelo app: triggers em `daily_doses` a mantêm atualizada na mesma
+ * transação de cada insert, update de status ou delete (ver [AdherenceAggregates]).
+ */
+@Entity(
+    tableName = "adherence_daily",
+    primaryKeys = ["date", "treatmentId"]
+)
+data class AdherenceDaily(
+    val date: String,
+    val treatmentId: Int,
+    val takenCount: Int = 0,
+    val missedCount: Int = 0
+)
+
+// Resultado do SUM sobre adherence_daily
+data class AdherenceTotals(
+    val takenCount: Int = 0,
+    val missedCount: Int = 0
+)
+
+/**
+ * Triggers que mantêm [AdherenceDaily] em dia com `daily_doses`.
+ * Criados na migração 9 -> 10 e a cada abertura do banco (instalação nova ou recriação destrutiva).
+ */
+object AdherenceAggregates {
+
+    private const val RESOLVED = "('TAKEN', 'MISSED')"
+
+    private fun ensureRow(ref: String) =
+        "INSERT OR IGNORE INTO adherence_daily (date, treatmentId, takenCount, missedCount) " +
+            "VALUES ($ref.date, $ref.treatmentId, 0, 0);"
+
+    private fun apply(ref: String, sign: String) =
+        "UPDATE adherence_daily SET " +
+            "takenCount = takenCount $sign ($ref.status = 'TAKEN'), " +
+            "missedCount = missedCount $sign ($ref.status = 'MISSED') " +
+            "WHERE date = $ref.date AND treatmentId = $ref.treatmentId;"
+
+    private val TRIGGERS = listOf(
+        "CREATE TRIGGER IF NOT EXISTS adherence_after_insert AFTER INSERT ON daily_doses " +
+            "WHEN NEW.status IN $RESOLVED BEGIN " +
+            ensureRow("NEW") + apply("NEW", "+") +
+            " END",
+        "CREATE TRIGGER IF NOT EXISTS adherence_after_delete AFTER DELETE ON daily_doses " +
+            "WHEN OLD.status IN $RESOLVED BEGIN " +
+            apply("OLD", "-") +
+            " END",
+        "CREATE TRIGGER IF NOT EXISTS adherence_after_update AFTER UPDATE OF status, date, treatmentId ON daily_doses " +
+            "WHEN OLD.status IN $RESOLVED OR NEW.status IN $RESOLVED BEGIN " +
+            apply("OLD", "-") + ensureRow("NEW") + apply("NEW", "+") +
+            " END"
+    )
+
+    fun installTriggers(db: SupportSQLiteDatabase) {
+        TRIGGERS.forEach { db.execSQL(it) }
+    }
+
+    // Recalcula a tabela inteira a partir das doses (usado só na migração)
+    fun rebuild(db: SupportSQLiteDatabase) {
+        db.execSQL("DELETE FROM adherence_daily")
+        db.execSQL(
+            "INSERT INTO adherence_daily (date, treatmentId, takenCount, missedCount) " +
+                "SELECT date, treatmentId, SUM(status = 'TAKEN'), SUM(status = 'MISSED') " +
+                "FROM daily_doses WHERE status IN $RESOLVED GROUP BY date, treatmentId"
+        )
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.medicamentos.data
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.os.SystemClock
+import android.util.Log
+import androidx.work.CoroutineWorker
+import androidx.work.ExistingWorkPolicy
+import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.WorkManager
+import androidx.work.WorkerParameters
+import androidx.work.workDataOf
+import com.example.medicamentos.schedule.DoseSchedule
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeoutOrNull
+import java.time.LocalDate
+
+/**
+ * Rearma os alarmes depois de eventos que os apagam ou invalidam: reinício do aparelho,
+ * atualização do app, mudança de fuso/hora e permissão de alarme exato concedida.
+ *
+ * Só a janela das próximas [WINDOW_MINUTES] é lida (índice status + scheduledAt); no modo
+ * NEXT_DUE basta um alarme. O [DoseHorizonWorker] rearma a janela todo dia.
+ */
+object AlarmRearm {
+
+    private const val TAG = "AlarmRearm"
+    private const val MINUTE_MILLIS = 60 * 1000L
+
+    // Janela de doses rearmadas no modo PER_DOSE
+    const val WINDOW_MINUTES = 48 * 60L
+
+    // Duração do último rearme, para acompanhar o custo (ex.: adb shell run-as ... shared_prefs)
+    private const val PREFS_NAME = "AppPreferences"
+    private const val KEY_LAST_REARM = "lastAlarmRearm"
+
+    /**
+     * Rearma os alarmes. Com [recomputeScheduledAt], recalcula antes o instante das doses
+     * pendentes (necessário quando o fuso muda). Retorna quantos alarmes foram armados.
+     */
+    suspend fun rearm(context: Context, reason: String, recomputeScheduledAt: Boolean = false): Int {
+        val startedAt = SystemClock.elapsedRealtime()
+        val dao = (context.applicationContext as MedicamentosApplication).database.treatmentDao()
+
+        var recomputed = 0
+        if (recomputeScheduledAt) {
+            // A partir de ontem: uma mudança de fuso desloca no máximo ~26h
+            val fromDate = DoseSchedule.formatDate(LocalDate.now().toEpochDay() - 1)
+            recomputed = dao.recomputeScheduledAt(fromDate) { DoseGenerator.epochMinute(it.date, it.time) }
+        }
+
+        val armed = when (AlarmScheduler.mode) {
+            AlarmScheduler.Mode.NEXT_DUE -> {
+                AlarmScheduler.armNextDue(context, dao)
+                1
+            }
+            AlarmScheduler.Mode.PER_DOSE -> {
+                val nowMinute = System.currentTimeMillis() / MINUTE_MILLIS
+                val upcoming = dao.getPendingDosesBetween(nowMinute, nowMinute + WINDOW_MINUTES)
+                AlarmScheduler.scheduleAll(context, upcoming)
+                upcoming.size
+            }
+        }
+        NextDosesSnapshot.rewrite(context, dao)
+
+        val elapsedMs = SystemClock.elapsedRealtime() - startedAt
+        Log.i(TAG, "Rearme ($reason): $armed alarmes, $recomputed horários recalculados em ${elapsedMs}ms")
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+            .putString(KEY_LAST_REARM, "$reason;armed=$armed;recomputed=$recomputed;ms=$elapsedMs;at=${System.currentTimeMillis()}")
+            .apply()
+        return armed
+    }
+}
+
+/**
+ * Recebe os eventos do sistema que exigem rearmar os alarmes.
+ */
+class AlarmRearmReceiver : BroadcastReceiver() {
+
+    companion object {
+        // Folga dentro do limite de um broadcast em segundo plano; o que passar disso vai para o WorkManager
+        private const val RECEIVER_BUDGET_MS = 8_000L
+
+        private const val ACTION_EXACT_ALARM_PERMISSION_CHANGED =
+            "android.app.action.SCHEDULE_EXACT_ALARM_PERMISSION_STATE_CHANGED"
+
+        private val HANDLED_ACTIONS = setOf(
+            Intent.ACTION_BOOT_COMPLETED,
+            Intent.ACTION_MY_PACKAGE_REPLACED,
+            Intent.ACTION_TIMEZONE_CHANGED,
+            Intent.ACTION_TIME_CHANGED,
+            ACTION_EXACT_ALARM_PERMISSION_CHANGED
+        )
+
+        // O instante (scheduledAt) depende do fuso: recalcula quando ele muda
+        fun needsRecompute(action: String) = action == Intent.ACTION_TIMEZONE_CHANGED
+    }
+
+    override fun onReceive(context: Context, intent: Intent) {
+        val action = intent.action ?: return
+        if (action !in HANDLED_ACTIONS) return
+
+        val pendingResult = goAsync()
+        val coroutineScope = CoroutineScope(Dispatchers.IO)
+
+        coroutineScope.launch {
+            try {
+                val armed = withTimeoutOrNull(RECEIVER_BUDGET_MS) {
+                    AlarmRearm.rearm(context, action, needsRecompute(action))
+                }
+                if (armed == null) {
+                    Log.w("AlarmRearm", "Rearme ($action) passou de ${RECEIVER_BUDGET_MS}ms; continuando no WorkManager.")
+                    AlarmRearmWorker.enqueue(context, action)
+                }
+            } catch (e: Exception) {
+                Log.e("AlarmRearm", "Falha ao rearmar os alarmes ($action).", e)
+                AlarmRearmWorker.enqueue(context, action)
+            } finally {
+                pendingResult.finish()
+            }
+        }
+    }
+}
+
+/**
+ * Termina um rearme que não coube no tempo do receiver.
+ */
+class AlarmRearmWorker(
+    appContext: Context,
+    workerParams: WorkerParameters
+) : CoroutineWorker(appContext, workerParams) {
+
+    companion object {
+        private const val KEY_ACTION = "action"
+
+        fun enqueue(context: Context, action: String) {
+            val request = OneTimeWorkRequestBuilder<AlarmRearmWorker>()
+                .setInputData(workDataOf(KEY_ACTION to action))
+                .build()
+            WorkManager.getInstance(context).enqueueUniqueWork("alarmRearm", ExistingWorkPolicy.REPLACE, request)
+        }
+    }
+
+    override suspend fun doWork(): Result {
+        val action = inputData.getString(KEY_ACTION) ?: "worker"
+        return try {
+            // Recalcula sempre: um pedido de fuso pode ter sido substituído por outro na fila
+            AlarmRearm.rearm(applicationContext, action, recomputeScheduledAt = true)
+            Result.success()
+        } catch (e: Exception) {
+            Log.e("AlarmRearm", "Falha ao rearmar os alarmes no worker.", e)
+            Result.retry()
+        }
+    }
+}
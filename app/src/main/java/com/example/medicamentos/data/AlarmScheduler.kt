@@ -6,11 +6,100 @@ import android.content.Context
 import android.content.Intent
 import android.os.Build
 import android.util.Log
-import java.util.*
 
 object AlarmScheduler {
 
+    /**
+     * PER_DOSE: um alarme exato por dose (request code = dose.id).
+     * NEXT_DUE: um único alarme armado para a próxima dose pendente; o [AlarmReceiver] trata
+     * todas as doses daquele minuto e rearma para a seguinte.
+     */
+    enum class Mode { PER_DOSE, NEXT_DUE }
+
+    @Volatile
+    var mode: Mode = Mode.NEXT_DUE
+
+    const val ACTION_MEDICATION_ALARM = "com.example.medicamentos.MEDICATION_ALARM"
+    const val ACTION_NEXT_DUE_ALARM = "com.example.medicamentos.NEXT_DUE_ALARM"
+    const val EXTRA_SCHEDULED_AT = "SCHEDULED_AT"
+
+    // Request code fixo do alarme "próxima dose" (ids de dose começam em 1, então não há colisão)
+    private const val NEXT_DUE_REQUEST_CODE = 0
+    private const val MINUTE_MILLIS = 60 * 1000L
+
+    /**
+     * Ponto único para reagir a mudanças no cronograma (doses criadas, adiadas, tomadas ou apagadas).
+     * No modo NEXT_DUE as doses alteradas não importam: basta rearmar para a próxima pendente.
+     * Em ambos os modos o [NextDosesSnapshot] lido pelo [AlarmReceiver] é regravado.
+     */
+    suspend fun onDosesChanged(context: Context, dao: TreatmentDao, changedDoses: List<MedicationDose> = emptyList()) {
+        when (mode) {
+            Mode.PER_DOSE -> changedDoses.forEach { dose ->
+                if (dose.status == MedicationStatus.PENDING) schedule(context, dose) else cancel(context, dose)
+            }
+            Mode.NEXT_DUE -> armNextDue(context, dao)
+        }
+        NextDosesSnapshot.rewrite(context, dao)
+    }
+
+    /**
+     * Arma (ou substitui) o alarme único para a primeira dose pendente depois de [afterMinute].
+     * Por padrão inclui o minuto atual, para que uma dose recém-criada para "agora" ainda toque.
+     */
+    suspend fun armNextDue(
+        context: Context,
+        dao: TreatmentDao,
+        afterMinute: Long = System.currentTimeMillis() / MINUTE_MILLIS - 1
+    ) {
+        val alarmManager = context.getSystemService(Context.ALARM_SERVICE) as AlarmManager
+        val nextDose = dao.getNextPendingDoseAfter(afterMinute)
+
+        if (nextDose == null) {
+            alarmManager.cancel(nextDuePendingIntent(context, 0))
+            Log.d("AlarmScheduler", "Nenhuma dose pendente: alarme único cancelado.")
+            return
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+            Log.e("AlarmScheduler", "Permissão para agendar alarmes exatos não concedida.")
+            return
+        }
+
+        try {
+            alarmManager.setExactAndAllowWhileIdle(
+                AlarmManager.RTC_WAKEUP,
+                nextDose.scheduledAt * MINUTE_MILLIS,
+                nextDuePendingIntent(context, nextDose.scheduledAt)
+            )
+            Log.d("AlarmScheduler", "Alarme único armado para ${nextDose.date} ${nextDose.time} (${nextDose.medicationName})")
+        } catch (e: SecurityException) {
+            Log.e("AlarmScheduler", "Permissão SCHEDULE_EXACT_ALARM não concedida.")
+        }
+    }
+
+    private fun nextDuePendingIntent(context: Context, scheduledAt: Long): PendingIntent {
+        val intent = Intent(context, AlarmReceiver::class.java).apply {
+            action = ACTION_NEXT_DUE_ALARM
+            putExtra(EXTRA_SCHEDULED_AT, scheduledAt)
+        }
+        return PendingIntent.getBroadcast(
+            context,
+            NEXT_DUE_REQUEST_CODE,
+            intent,
+            PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
+        )
+    }
+
     fun schedule(context: Context, dose: MedicationDose) {
+        scheduleAll(context, listOf(dose))
+    }
+
+    /**
+     * Agenda várias doses de uma vez (ex.: ao rearmar depois de reiniciar): o AlarmManager e a
+     * permissão de alarme exato são consultados uma única vez para o lote inteiro.
+     */
+    fun scheduleAll(context: Context, doses: List<MedicationDose>) {
+        if (doses.isEmpty()) return
         val alarmManager = context.getSystemService(Context.ALARM_SERVICE) as AlarmManager
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
@@ -18,9 +107,14 @@ object AlarmScheduler {
             return
         }
 
+        val nowMillis = System.currentTimeMillis()
+        doses.forEach { dose -> schedule(context, alarmManager, dose, nowMillis) }
+    }
+
+    private fun schedule(context: Context, alarmManager: AlarmManager, dose: MedicationDose, nowMillis: Long) {
         // ✨ CORREÇÃO: Usamos um Intent com uma Action única para evitar conflitos
         val intent = Intent(context, AlarmReceiver::class.java).apply {
-            action = "com.example.medicamentos.MEDICATION_ALARM" // Action para identificar o Intent
+            action = ACTION_MEDICATION_ALARM // Action para identificar o Intent
             putExtra("DOSE_ID", dose.id) // O único dado que realmente precisamos
         }
 
@@ -31,25 +125,20 @@ object AlarmScheduler {
             PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
         )
 
-        // Calcular a hora exata do alarme
-        val calendar = Calendar.getInstance()
-        val timeParts = dose.time.split(":")
-        val dateParts = dose.date.split("-")
-
-        calendar.set(Calendar.YEAR, dateParts[0].toInt())
-        calendar.set(Calendar.MONTH, dateParts[1].toInt() - 1) // Mês é 0-based
-        calendar.set(Calendar.DAY_OF_MONTH, dateParts[2].toInt())
-        calendar.set(Calendar.HOUR_OF_DAY, timeParts[0].toInt())
-        calendar.set(Calendar.MINUTE, timeParts[1].toInt())
-        calendar.set(Calendar.SECOND, 0)
-        calendar.set(Calendar.MILLISECOND, 0)
+        // Hora exata do alarme: scheduledAt já vem calculado; doses antigas caem no :schedule-core
+        val scheduledMinute = dose.scheduledAt.takeIf { it > 0 } ?: DoseGenerator.epochMinute(dose.date, dose.time)
+        if (scheduledMinute <= 0) {
+            Log.e("AlarmScheduler", "Horário inválido para a dose ${dose.id}: ${dose.date} ${dose.time}")
+            return
+        }
+        val triggerAtMillis = scheduledMinute * MINUTE_MILLIS
 
         // Agendar o alarme
-        if (calendar.timeInMillis > System.currentTimeMillis()) {
+        if (triggerAtMillis > nowMillis) {
             try {
                 alarmManager.setExactAndAllowWhileIdle(
                     AlarmManager.RTC_WAKEUP,
-                    calendar.timeInMillis,
+                    triggerAtMillis,
                     pendingIntent
                 )
                 Log.d("AlarmScheduler", "Alarme agendado para ${dose.medicationName} às ${dose.time}")
@@ -62,7 +151,7 @@ object AlarmScheduler {
     fun cancel(context: Context, dose: MedicationDose) {
         val alarmManager = context.getSystemService(Context.ALARM_SERVICE) as AlarmManager
         val intent = Intent(context, AlarmReceiver::class.java).apply {
-            action = "com.example.medicamentos.MEDICATION_ALARM"
+            action = ACTION_MEDICATION_ALARM
         }
 
         // É crucial recriar o PendingIntent exatamente da mesma forma para que o sistema o encontre e cancele
@@ -76,4 +165,4 @@ object AlarmScheduler {
         alarmManager.cancel(pendingIntent)
         Log.d("AlarmScheduler", "Alarme cancelado para a dose ${dose.id}")
     }
-}
\ No newline at end of file
+}
@@ -9,6 +9,8 @@ import android.content.Intent
 import android.media.AudioAttributes
 import android.media.RingtoneManager
 import android.os.Build
+import android.os.Process
+import android.os.SystemClock
 import android.os.VibrationEffect
 import android.os.Vibrator
 import android.util.Log
@@ -21,7 +23,49 @@ import kotlinx.coroutines.launch
 
 class AlarmReceiver : BroadcastReceiver() {
 
+    companion object {
+        // Doses que vencem dentro desta janela são anunciadas juntas: um despertar, um som, uma notificação agrupada
+        const val COALESCE_WINDOW_MINUTES = 2L
+
+        private const val CHANNEL_ID = "medication_alarm_channel"
+        private const val GROUP_KEY = "com.example.medicamentos.DOSES_DUE"
+        private const val MINUTE_MILLIS = 60 * 1000L
+
+        // Seção de trace do caminho alarme → notificação (medida no :macrobenchmark)
+        const val TRACE_ALARM_NOTIFY = "AlarmReceiver.notify"
+
+        // Última latência medida, para acompanhar em campo (ex.: adb shell run-as ... shared_prefs)
+        private const val PREFS_NAME = "AppPreferences"
+        private const val KEY_LAST_ALARM_LATENCY = "lastAlarmLatency"
+
+        // IDs de resumo são negativos para nunca colidirem com os IDs das doses
+        fun summaryNotificationId(windowStart: Long): Int = -((windowStart % 1_000_000L).toInt() + 1)
+
+        /**
+         * Fecha a notificação de uma dose e, se era a última do grupo, também o resumo.
+         */
+        fun cancelDoseNotification(context: Context, notificationId: Int, summaryId: Int) {
+            val notificationManager = context.getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
+            notificationManager.cancel(notificationId)
+            if (summaryId == 0) return
+
+            val remainingInGroup = notificationManager.activeNotifications.count {
+                it.notification.group == GROUP_KEY && it.id != summaryId && it.id != notificationId
+            }
+            if (remainingInGroup == 0) {
+                notificationManager.cancel(summaryId)
+            }
+        }
+    }
+
     override fun onReceive(context: Context, intent: Intent) {
+        val receivedAt = SystemClock.elapsedRealtime()
+
+        if (intent.action == AlarmScheduler.ACTION_NEXT_DUE_ALARM) {
+            handleNextDueAlarm(context, intent.getLongExtra(AlarmScheduler.EXTRA_SCHEDULED_AT, 0), receivedAt)
+            return
+        }
+
         val doseId = intent.getIntExtra("DOSE_ID", 0)
         Log.d("AlarmReceiver", "Alarme recebido para DOSE_ID: $doseId")
 
@@ -30,6 +74,16 @@ class AlarmReceiver : BroadcastReceiver() {
             return
         }
 
+        // Caminho rápido: a dose e as demais da janela vêm do snapshot, sem esperar o Room abrir
+        val announced = traced(TRACE_ALARM_NOTIFY) {
+            val snapshot = NextDosesSnapshot.read(context) ?: return@traced null
+            val dose = snapshot.findById(doseId) ?: return@traced null
+            snapshot.pendingBetween(dose.scheduledAt, dose.scheduledAt + COALESCE_WINDOW_MINUTES - 1)
+                ?.let { windowDoses -> listOf(dose) + windowDoses.filter { it.id != dose.id } }
+                ?.also { dueDoses -> notifyDue(context, dueDoses, dose.scheduledAt) }
+        }
+        val latency = announced?.let { measureLatency("snapshot", receivedAt, it.first().scheduledAt, it.size) }
+
         // ✨ A CORREÇÃO FINAL ESTÁ AQUI ✨
         // Informa ao sistema que vamos fazer um trabalho assíncrono
         val pendingResult = goAsync()
@@ -42,11 +96,29 @@ class AlarmReceiver : BroadcastReceiver() {
 
                 if (dose != null) {
                     Log.d("AlarmReceiver", "Dose encontrada no banco: ${dose.medicationName}")
-                    triggerAlarmFeedback(context)
-                    sendNotification(context, dose) // Passa o objeto dose inteiro
+                    // Alarmes por dose (modo PER_DOSE): junta as demais doses da mesma janela
+                    // e cancela os alarmes delas, que de outra forma tocariam de novo logo em seguida
+                    val windowDoses = dao.getPendingDosesBetween(dose.scheduledAt, dose.scheduledAt + COALESCE_WINDOW_MINUTES - 1)
+                    val dueDoses = listOf(dose) + windowDoses.filter { it.id != dose.id }
+                    dueDoses.filter { it.id != dose.id }.forEach { AlarmScheduler.cancel(context, it) }
+
+                    if (announced == null) {
+                        notifyDue(context, dueDoses, dose.scheduledAt)
+                        saveLatency(context, measureLatency("room", receivedAt, dose.scheduledAt, dueDoses.size))
+                    } else {
+                        reconcileWithRoom(context, announced, dueDoses, dose.scheduledAt)
+                    }
                 } else {
                     Log.e("AlarmReceiver", "Dose com ID $doseId não encontrada no banco.")
+                    announced?.let { reconcileWithRoom(context, it, emptyList(), it.first().scheduledAt) }
                 }
+                latency?.let { saveLatency(context, it) }
+
+                // A janela do snapshot anda junto com os alarmes
+                NextDosesSnapshot.rewrite(context, dao)
+
+                // Aproveita o despertar para fechar doses antigas que ficaram pendentes
+                MissedDoseSweeper.sweepIfDue(context)
             } finally {
                 // Informa ao sistema que terminamos o trabalho em segundo plano
                 pendingResult.finish()
@@ -55,6 +127,99 @@ class AlarmReceiver : BroadcastReceiver() {
         }
     }
 
+    /**
+     * Alarme único (modo NEXT_DUE): trata em lote todas as doses pendentes da janela
+     * e rearma o alarme para a próxima dose depois dela.
+     */
+    private fun handleNextDueAlarm(context: Context, scheduledAt: Long, receivedAt: Long) {
+        Log.d("AlarmReceiver", "Alarme único recebido para o minuto $scheduledAt")
+        val windowEnd = scheduledAt + COALESCE_WINDOW_MINUTES - 1
+
+        // Caminho rápido: notifica a partir do snapshot; o Room só confere depois
+        val announced = traced(TRACE_ALARM_NOTIFY) {
+            NextDosesSnapshot.read(context)?.pendingBetween(scheduledAt, windowEnd)
+                ?.also { dueDoses -> notifyDue(context, dueDoses, scheduledAt) }
+        }
+        val latency = announced?.takeIf { it.isNotEmpty() }?.let { measureLatency("snapshot", receivedAt, scheduledAt, it.size) }
+
+        val pendingResult = goAsync()
+        val coroutineScope = CoroutineScope(Dispatchers.IO)
+
+        coroutineScope.launch {
+            try {
+                val dao = (context.applicationContext as MedicamentosApplication).database.treatmentDao()
+                val dueDoses = dao.getPendingDosesBetween(scheduledAt, windowEnd)
+
+                if (announced == null) {
+                    if (dueDoses.isNotEmpty()) {
+                        Log.d("AlarmReceiver", "${dueDoses.size} doses para este horário")
+                        notifyDue(context, dueDoses, scheduledAt)
+                        saveLatency(context, measureLatency("room", receivedAt, scheduledAt, dueDoses.size))
+                    }
+                } else {
+                    reconcileWithRoom(context, announced, dueDoses, scheduledAt)
+                }
+                latency?.let { saveLatency(context, it) }
+
+                AlarmScheduler.armNextDue(context, dao, afterMinute = windowEnd)
+                // A janela do snapshot anda junto com os alarmes
+                NextDosesSnapshot.rewrite(context, dao)
+
+                // Aproveita o despertar para fechar doses antigas que ficaram pendentes
+                MissedDoseSweeper.sweepIfDue(context)
+            } finally {
+                pendingResult.finish()
+                Log.d("AlarmReceiver", "Trabalho assíncrono finalizado.")
+            }
+        }
+    }
+
+    private fun notifyDue(context: Context, doses: List<MedicationDose>, windowStart: Long) {
+        if (doses.isEmpty()) return
+        triggerAlarmFeedback(context)
+        sendNotifications(context, doses, windowStart)
+    }
+
+    /**
+     * Confere com o Room as doses anunciadas a partir do snapshot. Se ele estava desatualizado
+     * (dose tomada, apagada ou criada sem passar pelo [AlarmScheduler]), refaz as notificações.
+     */
+    private fun reconcileWithRoom(context: Context, announced: List<MedicationDose>, current: List<MedicationDose>, windowStart: Long) {
+        if (announced.map { it.id }.toSet() == current.map { it.id }.toSet()) return
+        Log.w("AlarmReceiver", "Snapshot desatualizado para o minuto $windowStart: refazendo as notificações pelo Room")
+
+        val notificationManager = context.getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
+        announced.forEach { notificationManager.cancel(it.id) }
+        if (announced.size > 1) notificationManager.cancel(summaryNotificationId(windowStart))
+
+        when {
+            current.isEmpty() -> RingtonePlayerService.stop()
+            announced.isEmpty() -> notifyDue(context, current, windowStart)
+            // O alarme já está tocando: só troca as notificações
+            else -> sendNotifications(context, current, windowStart)
+        }
+    }
+
+    /**
+     * Latência do alarme até a notificação: desde o onReceive, desde o início do processo
+     * (valor pequeno = processo frio) e desde o minuto agendado (inclui o atraso do AlarmManager).
+     */
+    private fun measureLatency(source: String, receivedAt: Long, scheduledAt: Long, doseCount: Int): String {
+        val now = SystemClock.elapsedRealtime()
+        val wallClock = System.currentTimeMillis()
+        val report = "source=$source;doses=$doseCount;notifyMs=${now - receivedAt};" +
+            "processAgeMs=${now - Process.getStartElapsedRealtime()};" +
+            "sinceScheduledMs=${wallClock - scheduledAt * MINUTE_MILLIS};at=$wallClock"
+        Log.i("AlarmLatency", report)
+        return report
+    }
+
+    private fun saveLatency(context: Context, report: String) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+            .putString(KEY_LAST_ALARM_LATENCY, report)
+            .apply()
+    }
+
     private fun triggerAlarmFeedback(context: Context) {
         Log.d("AlarmReceiver", "Tentando ativar som e vibração...")
         try {
@@ -76,73 +241,116 @@ class AlarmReceiver : BroadcastReceiver() {
         }
     }
 
-    // Função simplificada para receber o objeto Dose
-    private fun sendNotification(context: Context, dose: MedicationDose) {
-        Log.d("AlarmReceiver", "--- INICIANDO sendNotification para ${dose.medicationName} ---")
+    /**
+     * Envia as notificações de um lote de doses. Uma dose sozinha gera a notificação de sempre;
+     * várias doses viram um grupo com uma notificação (silenciosa) por dose, cada uma com suas
+     * ações, e um resumo que é o único a tocar.
+     */
+    private fun sendNotifications(context: Context, doses: List<MedicationDose>, windowStart: Long) {
+        Log.d("AlarmReceiver", "--- INICIANDO sendNotifications para ${doses.size} doses ---")
         val notificationManager = context.getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
-        val channelId = "medication_alarm_channel"
-        val notificationId = dose.id
 
         try {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                val channel = NotificationChannel(
-                    channelId,
-                    "Lembretes de Medicamentos (Alarmes)",
-                    NotificationManager.IMPORTANCE_HIGH
-                ).apply {
-                    description = "Alarmes críticos para tomar medicamentos"
-                    val soundUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM)
-                    val audioAttributes = AudioAttributes.Builder()
-                        .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
-                        .setUsage(AudioAttributes.USAGE_ALARM)
-                        .build()
-                    setSound(soundUri, audioAttributes)
-                    enableVibration(true)
-                    vibrationPattern = longArrayOf(0, 1000, 500, 1000)
+            createNotificationChannel(notificationManager)
+
+            val isGroup = doses.size > 1
+            val summaryId = if (isGroup) summaryNotificationId(windowStart) else 0
+
+            doses.forEach { dose ->
+                val builder = buildDoseNotification(context, dose, summaryId)
+                if (isGroup) {
+                    builder.setGroup(GROUP_KEY)
+                        .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_SUMMARY)
                 }
-                notificationManager.createNotificationChannel(channel)
+                notificationManager.notify(dose.id, builder.build())
             }
-            Log.d("AlarmReceiver", "Passo 1: Canal de notificação OK.")
 
-            val mainIntent = Intent(context, MainActivity::class.java)
-            val pendingMainIntent = PendingIntent.getActivity(context, notificationId, mainIntent, PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE)
-            Log.d("AlarmReceiver", "Passo 2: PendingIntent principal OK.")
+            if (isGroup) {
+                val inboxStyle = NotificationCompat.InboxStyle()
+                    .setSummaryText("${doses.size} medicamentos")
+                doses.forEach { inboxStyle.addLine("${it.medicationName} - ${it.dosage}") }
 
-            val confirmIntent = Intent(context, NotificationActionReceiver::class.java).apply {
-                action = "ACTION_CONFIRM"
-                putExtra("NOTIFICATION_ID", notificationId)
-                putExtra("DOSE_ID", dose.id)
-            }
-            val pendingConfirmIntent = PendingIntent.getBroadcast(context, notificationId * 10 + 1, confirmIntent, PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE)
-            Log.d("AlarmReceiver", "Passo 3: PendingIntent de confirmação OK.")
+                val mainIntent = Intent(context, MainActivity::class.java)
+                val pendingMainIntent = PendingIntent.getActivity(context, summaryId, mainIntent, PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE)
 
-            val postponeIntent = Intent(context, NotificationActionReceiver::class.java).apply {
-                action = "ACTION_POSTPONE"
-                putExtra("NOTIFICATION_ID", notificationId)
-                putExtra("DOSE_ID", dose.id)
+                val summary = NotificationCompat.Builder(context, CHANNEL_ID)
+                    .setSmallIcon(R.drawable.ic_medication)
+                    .setContentTitle("Hora de tomar ${doses.size} medicamentos")
+                    .setContentText(doses.joinToString(", ") { it.medicationName })
+                    .setStyle(inboxStyle)
+                    .setPriority(NotificationCompat.PRIORITY_HIGH)
+                    .setCategory(NotificationCompat.CATEGORY_ALARM)
+                    .setGroup(GROUP_KEY)
+                    .setGroupSummary(true)
+                    .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_SUMMARY)
+                    .setAutoCancel(true)
+                    .setContentIntent(pendingMainIntent)
+                    .build()
+                notificationManager.notify(summaryId, summary)
             }
-            val pendingPostponeIntent = PendingIntent.getBroadcast(context, notificationId * 10 + 2, postponeIntent, PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE)
-            Log.d("AlarmReceiver", "Passo 4: PendingIntent de adiar OK.")
-
-            val builder = NotificationCompat.Builder(context, channelId)
-                .setSmallIcon(R.drawable.ic_medication)
-                .setContentTitle("Hora de tomar: ${dose.medicationName}")
-                .setContentText("Dosagem: ${dose.dosage}")
-                .setPriority(NotificationCompat.PRIORITY_HIGH)
-                .setCategory(NotificationCompat.CATEGORY_ALARM)
-                .setAutoCancel(true)
-                .setContentIntent(pendingMainIntent)
-                .addAction(R.drawable.ic_check, "Confirmar", pendingConfirmIntent)
-                if (dose.postponeCount < 2) {
-                    builder.addAction(R.drawable.ic_snooze, "Adiar 15 min", pendingPostponeIntent)
-                }
-            Log.d("AlarmReceiver", "Passo 5: Builder da notificação construído com sucesso.")
-
-            notificationManager.notify(notificationId, builder.build())
-            Log.d("AlarmReceiver", "Passo 6: Notificação ENVIADA com sucesso!")
+            Log.d("AlarmReceiver", "Notificações ENVIADAS com sucesso!")
 
         } catch (e: Exception) {
             Log.e("AlarmReceiver", "CRASH ao tentar criar ou enviar notificação", e)
         }
     }
-}
\ No newline at end of file
+
+    private fun createNotificationChannel(notificationManager: NotificationManager) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            val channel = NotificationChannel(
+                CHANNEL_ID,
+                "Lembretes de Medicamentos (Alarmes)",
+                NotificationManager.IMPORTANCE_HIGH
+            ).apply {
+                description = "Alarmes críticos para tomar medicamentos"
+                val soundUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM)
+                val audioAttributes = AudioAttributes.Builder()
+                    .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                    .setUsage(AudioAttributes.USAGE_ALARM)
+                    .build()
+                setSound(soundUri, audioAttributes)
+                enableVibration(true)
+                vibrationPattern = longArrayOf(0, 1000, 500, 1000)
+            }
+            notificationManager.createNotificationChannel(channel)
+        }
+    }
+
+    // Notificação de uma dose, com as ações de confirmar e adiar
+    private fun buildDoseNotification(context: Context, dose: MedicationDose, summaryId: Int): NotificationCompat.Builder {
+        val notificationId = dose.id
+
+        val mainIntent = Intent(context, MainActivity::class.java)
+        val pendingMainIntent = PendingIntent.getActivity(context, notificationId, mainIntent, PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE)
+
+        val confirmIntent = Intent(context, NotificationActionReceiver::class.java).apply {
+            action = "ACTION_CONFIRM"
+            putExtra("NOTIFICATION_ID", notificationId)
+            putExtra("SUMMARY_ID", summaryId)
+            putExtra("DOSE_ID", dose.id)
+        }
+        val pendingConfirmIntent = PendingIntent.getBroadcast(context, notificationId * 10 + 1, confirmIntent, PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE)
+
+        val postponeIntent = Intent(context, NotificationActionReceiver::class.java).apply {
+            action = "ACTION_POSTPONE"
+            putExtra("NOTIFICATION_ID", notificationId)
+            putExtra("SUMMARY_ID", summaryId)
+            putExtra("DOSE_ID", dose.id)
+        }
+        val pendingPostponeIntent = PendingIntent.getBroadcast(context, notificationId * 10 + 2, postponeIntent, PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE)
+
+        val builder = NotificationCompat.Builder(context, CHANNEL_ID)
+            .setSmallIcon(R.drawable.ic_medication)
+            .setContentTitle("Hora de tomar: ${dose.medicationName}")
+            .setContentText("Dosagem: ${dose.dosage}")
+            .setPriority(NotificationCompat.PRIORITY_HIGH)
+            .setCategory(NotificationCompat.CATEGORY_ALARM)
+            .setAutoCancel(true)
+            .setContentIntent(pendingMainIntent)
+            .addAction(R.drawable.ic_check, "Confirmar", pendingConfirmIntent)
+        if (dose.postponeCount < 2) {
+            builder.addAction(R.drawable.ic_snooze, "Adiar 15 min", pendingPostponeIntent)
+        }
+        return builder
+    }
+}
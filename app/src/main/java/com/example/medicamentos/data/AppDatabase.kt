@@ -5,34 +5,204 @@ import androidx.room.Database
 import androidx.room.Room
 import androidx.room.RoomDatabase
 import androidx.room.TypeConverters
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
 import com.example.medicamentos.data.Converters
 import com.example.medicamentos.data.TreatmentDao
 
+// O SQLite de aparelhos mais antigos aceita no máximo 999 parâmetros por consulta:
+// listas maiores em `IN (:ids)` são quebradas em pedaços deste tamanho
+internal const val SQL_VARIABLE_LIMIT = 900
+
 // CORREÇÃO 1: Versão do banco atualizada (ex: para 4)
 // CORREÇÃO 2: Adicionada a anotação @TypeConverters
-@Database(entities = [Treatment::class, MedicationDose::class], version = 6, exportSchema = false)
+@Database(
+    entities = [
+        Treatment::class, MedicationDose::class, OutboxEntry::class, AdherenceDaily::class,
+        CaregiverTreatment::class, CaregiverDose::class
+    ],
+    version = 12,
+    exportSchema = false
+)
 @TypeConverters(Converters::class)
 abstract class AppDatabase : RoomDatabase() {
 
     abstract fun treatmentDao(): TreatmentDao
+    abstract fun outboxDao(): OutboxDao
+    abstract fun caregiverDao(): CaregiverDao
 
     companion object {
         @Volatile
         private var INSTANCE: AppDatabase? = null
 
+        /**
+         * 6 -> 7: coluna numérica scheduledAt (minutos desde a época, hora local convertida para UTC)
+         * e índices para as consultas por data, por tratamento e por status.
+         */
+        val MIGRATION_6_7 = object : Migration(6, 7) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("ALTER TABLE daily_doses ADD COLUMN scheduledAt INTEGER NOT NULL DEFAULT 0")
+                db.execSQL(
+                    "UPDATE daily_doses SET scheduledAt = " +
+                        "COALESCE(CAST(strftime('%s', date || ' ' || time, 'utc') AS INTEGER) / 60, 0)"
+                )
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_daily_doses_date_time ON daily_doses (date, time)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_daily_doses_treatmentId_scheduledAt ON daily_doses (treatmentId, scheduledAt)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_daily_doses_status_scheduledAt ON daily_doses (status, scheduledAt)")
+            }
+        }
+
+        /**
+         * 7 -> 8: tabela do outbox de escritas para o Firestore (ver [Outbox]).
+         */
+        val MIGRATION_7_8 = object : Migration(7, 8) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `firestore_outbox` (" +
+                        "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                        "`documentPath` TEXT NOT NULL, " +
+                        "`operation` TEXT NOT NULL, " +
+                        "`payload` TEXT, " +
+                        "`createdAt` INTEGER NOT NULL, " +
+                        "`attempts` INTEGER NOT NULL)"
+                )
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_firestore_outbox_documentPath ON firestore_outbox (documentPath)")
+            }
+        }
+
+        /**
+         * 8 -> 9: uid estável das doses (ver [DoseGenerator.doseUid]), com índice único.
+         * Linhas duplicadas da mesma dose, que o gerador antigo podia criar, são descartadas
+         * mantendo a que já foi tomada ou perdida (senão a mais antiga).
+         */
+        val MIGRATION_8_9 = object : Migration(8, 9) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("ALTER TABLE daily_doses ADD COLUMN uid TEXT NOT NULL DEFAULT ''")
+
+                val keptRows = HashMap<String, Pair<Int, Boolean>>() // uid -> (id, já resolvida)
+                val duplicateIds = ArrayList<Int>()
+                db.query("SELECT id, treatmentId, date, time, status FROM daily_doses ORDER BY id").use { cursor ->
+                    while (cursor.moveToNext()) {
+                        val id = cursor.getInt(0)
+                        val uid = DoseGenerator.doseUid(cursor.getInt(1), cursor.getString(2), cursor.getString(3))
+                        val resolved = cursor.getString(4) != MedicationStatus.PENDING.name
+                        val kept = keptRows[uid]
+                        when {
+                            kept == null -> keptRows[uid] = id to resolved
+                            resolved && !kept.second -> {
+                                duplicateIds.add(kept.first)
+                                keptRows[uid] = id to true
+                            }
+                            else -> duplicateIds.add(id)
+                        }
+                    }
+                }
+
+                duplicateIds.forEach { db.execSQL("DELETE FROM daily_doses WHERE id = ?", arrayOf<Any>(it)) }
+
+                val update = db.compileStatement("UPDATE daily_doses SET uid = ? WHERE id = ?")
+                keptRows.forEach { (uid, row) ->
+                    update.bindString(1, uid)
+                    update.bindLong(2, row.first.toLong())
+                    update.executeUpdateDelete()
+                    update.clearBindings()
+                }
+                db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_daily_doses_uid ON daily_doses (uid)")
+            }
+        }
+
+        /**
+         * 9 -> 10: tabela de adesão por dia e tratamento, mantida por triggers (ver [AdherenceAggregates]),
+         * já preenchida com o histórico existente.
+         */
+        val MIGRATION_9_10 = object : Migration(9, 10) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `adherence_daily` (" +
+                        "`date` TEXT NOT NULL, " +
+                        "`treatmentId` INTEGER NOT NULL, " +
+                        "`takenCount` INTEGER NOT NULL, " +
+                        "`missedCount` INTEGER NOT NULL, " +
+                        "PRIMARY KEY(`date`, `treatmentId`))"
+                )
+                AdherenceAggregates.rebuild(db)
+                AdherenceAggregates.installTriggers(db)
+            }
+        }
+
+        /**
+         * 10 -> 11: cópia local dos dados dos pacientes acompanhados no modo cuidador (ver [CaregiverMirror]).
+         */
+        val MIGRATION_10_11 = object : Migration(10, 11) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `caregiver_treatments` (" +
+                        "`patientUid` TEXT NOT NULL, " +
+                        "`id` INTEGER NOT NULL, " +
+                        "`medicationName` TEXT NOT NULL, " +
+                        "`dosage` TEXT NOT NULL, " +
+                        "`startDate` INTEGER NOT NULL, " +
+                        "`durationInDays` INTEGER NOT NULL, " +
+                        "`frequencyPerDay` INTEGER NOT NULL, " +
+                        "`startHour` INTEGER NOT NULL, " +
+                        "`startMinute` INTEGER NOT NULL, " +
+                        "`intervalHours` INTEGER NOT NULL, " +
+                        "`daysCompleted` INTEGER NOT NULL, " +
+                        "PRIMARY KEY(`patientUid`, `id`))"
+                )
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `caregiver_doses` (" +
+                        "`patientUid` TEXT NOT NULL, " +
+                        "`uid` TEXT NOT NULL, " +
+                        "`id` INTEGER NOT NULL, " +
+                        "`treatmentId` INTEGER NOT NULL, " +
+                        "`medicationName` TEXT NOT NULL, " +
+                        "`dosage` TEXT NOT NULL, " +
+                        "`time` TEXT NOT NULL, " +
+                        "`date` TEXT NOT NULL, " +
+                        "`status` TEXT NOT NULL, " +
+                        "`takenTimestamp` INTEGER, " +
+                        "`postponeCount` INTEGER NOT NULL, " +
+                        "`scheduledAt` INTEGER NOT NULL, " +
+                        "PRIMARY KEY(`patientUid`, `uid`))"
+                )
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_caregiver_doses_patientUid_date ON caregiver_doses (patientUid, date)")
+            }
+        }
+
+        /**
+         * 11 -> 12: escritas do outbox descartadas (erro permanente ou tentativas esgotadas) saem da fila.
+         */
+        val MIGRATION_11_12 = object : Migration(11, 12) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("ALTER TABLE firestore_outbox ADD COLUMN failedAt INTEGER")
+            }
+        }
+
+        private const val DATABASE_NAME = "medicamentos_database"
+
+        // Triggers não fazem parte do schema gerado pelo Room. São instalados a cada abertura
+        // (os comandos são IF NOT EXISTS): a recriação destrutiva das versões 1 a 5 não chama onCreate
+        val CALLBACK = object : RoomDatabase.Callback() {
+            override fun onOpen(db: SupportSQLiteDatabase) {
+                AdherenceAggregates.installTriggers(db)
+            }
+        }
+
         fun getDatabase(context: Context): AppDatabase {
             return INSTANCE ?: synchronized(this) {
-                val instance = Room.databaseBuilder(
-                    context.applicationContext,
-                    AppDatabase::class.java,
-                    "medicamentos_database"
-                )
-                    // CORREÇÃO 3: Adicionada a migração destrutiva
-                    .fallbackToDestructiveMigration()
-                    .build()
+                val instance = builder(context, DATABASE_NAME).build()
                 INSTANCE = instance
                 instance
             }
         }
+
+        // Configuração do banco em arquivo, também usada pelos testes de migração
+        internal fun builder(context: Context, name: String): RoomDatabase.Builder<AppDatabase> =
+            Room.databaseBuilder(context.applicationContext, AppDatabase::class.java, name)
+                .addMigrations(MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10, MIGRATION_10_11, MIGRATION_11_12)
+                // Versões anteriores à 6 não têm migração: são recriadas e ressincronizadas da nuvem
+                .fallbackToDestructiveMigrationFrom(1, 2, 3, 4, 5)
+                .addCallback(CALLBACK)
     }
-}
\ No newline at end of file
+}
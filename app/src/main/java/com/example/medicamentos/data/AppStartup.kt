@@ -0,0 +1,190 @@
+package com.example.medicamentos.data
+
+import android.content.Context
+import android.os.Build
+import android.os.Process
+import android.os.Trace
+import android.util.Log
+import androidx.startup.Initializer
+import androidx.work.Constraints
+import androidx.work.ExistingPeriodicWorkPolicy
+import androidx.work.ExistingWorkPolicy
+import androidx.work.NetworkType
+import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.PeriodicWorkRequestBuilder
+import androidx.work.WorkManager
+import androidx.work.WorkManagerInitializer
+import com.google.firebase.firestore.ktx.firestore
+import com.google.firebase.ktx.Firebase
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeoutOrNull
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Inicialização do app em etapas.
+ *
+ * 1. Processo: o [Initializer] do App Startup só registra o trabalho adiado (nada de Room, rede
+ *    nem WorkManager antes da primeira tela). Um processo frio aberto só para um alarme ou para o
+ *    boot não abre o Room aqui: o [AlarmReceiver] notifica a partir do [NextDosesSnapshot].
+ * 2. Primeira tela: a Activity aberta chama [openDatabase], que abre o Room em segundo plano; a
+ *    HomeActivity desenha as doses de hoje direto dele e chama reportFullyDrawn, que libera
+ *    [awaitFullyDrawn].
+ * 3. Adiado: Firestore, sincronização, listeners e workers rodam depois disso, numa thread de
+ *    baixa prioridade. Se nenhuma tela abrir (processo iniciado por alarme ou worker), rodam
+ *    após [DEFERRED_TIMEOUT_MS].
+ *
+ * Cada etapa é uma seção de [Trace] com prefixo "startup:" (visível no Perfetto e no :macrobenchmark).
+ */
+object AppStartup {
+
+    private const val TAG = "AppStartup"
+    private const val DEFERRED_TIMEOUT_MS = 5_000L
+
+    private val fullyDrawn = CompletableDeferred<Unit>()
+
+    // Uma única thread com prioridade de segundo plano: não disputa CPU com a thread principal
+    val deferredDispatcher: CoroutineDispatcher = Executors.newSingleThreadExecutor { runnable ->
+        Thread({
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND)
+            runnable.run()
+        }, "startup-deferred")
+    }.asCoroutineDispatcher()
+
+    private val scope = CoroutineScope(SupervisorJob())
+
+    /** Chamado pelo FullyDrawnReporter da HomeActivity. */
+    fun onFullyDrawn() {
+        if (fullyDrawn.complete(Unit)) {
+            Log.d(TAG, "Primeira tela pronta, liberando a etapa adiada.")
+        }
+    }
+
+    /** Suspende até a primeira tela estar pronta (ou até o tempo limite). */
+    suspend fun awaitFullyDrawn() {
+        withTimeoutOrNull(DEFERRED_TIMEOUT_MS) { fullyDrawn.await() }
+    }
+
+    /**
+     * Abre (e migra, se preciso) o banco em segundo plano, para que a primeira consulta da tela
+     * encontre o Room pronto. Chamado no onCreate das Activities, nunca pelo App Startup.
+     */
+    fun openDatabase(context: Context) {
+        val app = context.applicationContext as MedicamentosApplication
+        runNow("startup:room-open") { app.database.openHelper.writableDatabase }
+    }
+
+    /** Roda já, fora da thread principal: só para o que a primeira tela precisa (ex.: abrir o Room). */
+    fun runNow(section: String, block: () -> Unit) {
+        scope.launch(Dispatchers.IO) { runSection(section, block) }
+    }
+
+    /** Roda depois da primeira tela, na thread de baixa prioridade. */
+    fun runDeferred(section: String, block: () -> Unit) {
+        scope.launch(deferredDispatcher) {
+            awaitFullyDrawn()
+            runSection(section, block)
+        }
+    }
+
+    private fun runSection(section: String, block: () -> Unit) {
+        try {
+            traced(section, block)
+        } catch (e: Exception) {
+            Log.e(TAG, "Falha na etapa $section", e)
+        }
+    }
+}
+
+/** Envolve [block] numa seção de [Trace] (começa e termina na mesma thread). */
+inline fun <T> traced(section: String, block: () -> T): T {
+    Trace.beginSection(section)
+    try {
+        return block()
+    } finally {
+        Trace.endSection()
+    }
+}
+
+private val asyncSectionCookies = AtomicInteger()
+
+/**
+ * Como [traced], para blocos que suspendem e podem trocar de thread: usa uma seção assíncrona
+ * (API 29+; nas versões anteriores só executa [block]).
+ */
+suspend fun <T> tracedAsync(section: String, block: suspend () -> T): T {
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) return block()
+    val cookie = asyncSectionCookies.incrementAndGet()
+    Trace.beginAsyncSection(section, cookie)
+    try {
+        return block()
+    } finally {
+        Trace.endAsyncSection(section, cookie)
+    }
+}
+
+/**
+ * Registra o que não precisa estar pronto para a primeira tela: inicialização do Firestore,
+ * agendamento dos workers e envio do outbox.
+ */
+class DeferredStartupInitializer : Initializer<Unit> {
+    override fun create(context: Context) {
+        val appContext = context.applicationContext
+        AppStartup.runDeferred("startup:firestore-init") { Firebase.firestore }
+        AppStartup.runDeferred("startup:schedule-workers") {
+            scheduleMissedDoseWorker(appContext)
+            scheduleDoseHorizonWorker(appContext)
+            scheduleDoseRekeyWorker(appContext)
+        }
+        // Envia o que ficou no outbox de uma execução anterior (ex: app fechado sem rede)
+        AppStartup.runDeferred("startup:outbox-flush") { Outbox.scheduleFlush(appContext) }
+    }
+
+    // O WorkManager precisa estar inicializado antes de agendar
+    override fun dependencies(): List<Class<out Initializer<*>>> = listOf(WorkManagerInitializer::class.java)
+
+    private fun scheduleDoseHorizonWorker(context: Context) {
+        // Avança a janela de doses materializadas uma vez por dia
+        val repeatingRequest = PeriodicWorkRequestBuilder<DoseHorizonWorker>(1, TimeUnit.DAYS)
+            .build()
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+            "doseHorizonExtension",
+            ExistingPeriodicWorkPolicy.KEEP,
+            repeatingRequest
+        )
+    }
+
+    private fun scheduleDoseRekeyWorker(context: Context) {
+        // Migração única dos documentos de dose para o uid; termina na hora se o usuário já foi migrado
+        val request = OneTimeWorkRequestBuilder<DoseRekeyWorker>()
+            .setConstraints(Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build())
+            .build()
+
+        WorkManager.getInstance(context).enqueueUniqueWork(
+            "doseDocRekey",
+            ExistingWorkPolicy.KEEP,
+            request
+        )
+    }
+
+    private fun scheduleMissedDoseWorker(context: Context) {
+        // A varredura é um único UPDATE: roda a cada 6 horas, sem exigir bateria alta
+        val repeatingRequest = PeriodicWorkRequestBuilder<MissedDoseWorker>(6, TimeUnit.HOURS)
+            .build()
+
+        // UPDATE troca o agendamento antigo (diário, com restrição de bateria) sem duplicar a tarefa
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+            "missedDoseCheck",
+            ExistingPeriodicWorkPolicy.UPDATE,
+            repeatingRequest
+        )
+    }
+}
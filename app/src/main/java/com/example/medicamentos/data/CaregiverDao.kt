@@ -0,0 +1,82 @@
+package com.example.medicamentos.data
+
+import androidx.room.Dao
+import androidx.room.Delete
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import androidx.room.Transaction
+import kotlinx.coroutines.flow.Flow
+
+@Dao
+interface CaregiverDao {
+
+    @Query("SELECT * FROM caregiver_treatments WHERE patientUid = :patientUid ORDER BY startDate DESC")
+    fun observeTreatments(patientUid: String): Flow<List<CaregiverTreatment>>
+
+    @Query("SELECT * FROM caregiver_doses WHERE patientUid IN (:patientUids) AND date = :date ORDER BY time ASC")
+    fun observeDoses(patientUids: List<String>, date: String): Flow<List<CaregiverDose>>
+
+    @Query("SELECT * FROM caregiver_treatments WHERE patientUid = :patientUid")
+    suspend fun getTreatments(patientUid: String): List<CaregiverTreatment>
+
+    @Query("SELECT * FROM caregiver_doses WHERE patientUid IN (:patientUids) AND date = :date")
+    suspend fun getDoses(patientUids: List<String>, date: String): List<CaregiverDose>
+
+    @Insert(onConflict = OnConflictStrategy.Companion.REPLACE)
+    suspend fun insertTreatments(treatments: List<CaregiverTreatment>)
+
+    @Insert(onConflict = OnConflictStrategy.Companion.REPLACE)
+    suspend fun insertDoses(doses: List<CaregiverDose>)
+
+    @Delete
+    suspend fun deleteTreatments(treatments: List<CaregiverTreatment>)
+
+    @Delete
+    suspend fun deleteDoses(doses: List<CaregiverDose>)
+
+    // Dias anteriores não aparecem em nenhuma tela do cuidador
+    @Query("DELETE FROM caregiver_doses WHERE patientUid IN (:patientUids) AND date < :date")
+    suspend fun deleteDosesBefore(patientUids: List<String>, date: String)
+
+    /**
+     * Aplica o resultado de um snapshot dos tratamentos do paciente: grava só o que mudou e
+     * remove o que sumiu. Sem diferenças, nada é escrito e as telas não recebem nova emissão.
+     */
+    @Transaction
+    suspend fun applyTreatments(patientUid: String, remote: List<CaregiverTreatment>) {
+        val existing = getTreatments(patientUid).associateBy { it.id }
+        val remoteIds = remote.mapTo(HashSet()) { it.id }
+        val changed = remote.filter { existing[it.id] != it }
+        val removed = existing.values.filter { it.id !in remoteIds }
+        if (changed.isNotEmpty()) insertTreatments(changed)
+        if (removed.isNotEmpty()) deleteTreatments(removed)
+    }
+
+    /**
+     * Mesmo que [applyTreatments] para as doses do dia de um ou mais pacientes
+     * ([remote] é o resultado completo da consulta para esses pacientes e essa data).
+     */
+    @Transaction
+    suspend fun applyDoses(patientUids: List<String>, date: String, remote: List<CaregiverDose>) {
+        val existing = getDoses(patientUids, date).associateBy { it.patientUid to it.uid }
+        val remoteKeys = remote.mapTo(HashSet()) { it.patientUid to it.uid }
+        val changed = remote.filter { existing[it.patientUid to it.uid] != it }
+        val removed = existing.values.filter { (it.patientUid to it.uid) !in remoteKeys }
+        if (changed.isNotEmpty()) insertDoses(changed)
+        if (removed.isNotEmpty()) deleteDoses(removed)
+        deleteDosesBefore(patientUids, date)
+    }
+
+    @Query("DELETE FROM caregiver_treatments")
+    suspend fun clearTreatments()
+
+    @Query("DELETE FROM caregiver_doses")
+    suspend fun clearDoses()
+
+    @Transaction
+    suspend fun clearAll() {
+        clearTreatments()
+        clearDoses()
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.medicamentos.data
+
+import android.app.Application
+import androidx.compose.runtime.Immutable
+import androidx.compose.runtime.mutableStateOf
+import androidx.lifecycle.ViewModel
+import androidx.lifecycle.ViewModelProvider
+import androidx.lifecycle.viewModelScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.flow.SharingStarted
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.flatMapLatest
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.onEach
+import kotlinx.coroutines.flow.stateIn
+import java.time.LocalDate
+
+@Immutable
+data class PatientSummaryUi(
+    val patient: LinkedPatient,
+    val total: Int,
+    val taken: Int,
+    val pending: Int,
+    val missed: Int,
+    // Primeira dose pendente do dia ("08:00 - Paracetamol"); nulo se não há
+    val nextDose: String?
+)
+
+/**
+ * Agrupa as doses do dia por paciente. Todo paciente vinculado aparece, mesmo sem doses.
+ */
+fun summarizeByPatient(patients: List<LinkedPatient>, doses: List<CaregiverDose>): List<PatientSummaryUi> {
+    val byPatient = doses.groupBy { it.patientUid }
+    return patients.map { patient ->
+        val patientDoses = byPatient[patient.uid].orEmpty()
+        val pending = patientDoses.filter { it.status == MedicationStatus.PENDING }
+        PatientSummaryUi(
+            patient = patient,
+            total = patientDoses.size,
+            taken = patientDoses.count { it.status == MedicationStatus.TAKEN },
+            pending = pending.size,
+            missed = patientDoses.count { it.status == MedicationStatus.MISSED },
+            nextDose = pending.minByOrNull { it.time }?.let { "${it.time} - ${it.medicationName}" }
+        )
+    }
+}
+
+/**
+ * Painel do cuidador com todos os pacientes vinculados.
+ *
+ * Lê as doses do dia do Room ([CaregiverMirror.dosesForPatients]); a cópia local é mantida por uma
+ * consulta collectionGroup("doses") filtrada por patientUid e data, em vez de dois listeners por
+ * paciente. O agrupamento por paciente é feito aqui, fora da thread principal.
+ */
+class CaregiverDashboardViewModel(
+    private val application: Application,
+    private val patients: List<LinkedPatient>
+) : ViewModel() {
+
+    val isLoading = mutableStateOf(patients.isNotEmpty())
+
+    // Data de hoje, que muda sozinha na virada do dia
+    private val today = MinuteClock.currentMinute
+        .map { LocalDate.now().toString() }
+        .distinctUntilChanged()
+
+    @OptIn(ExperimentalCoroutinesApi::class)
+    val summaries: StateFlow<List<PatientSummaryUi>> = today
+        .flatMapLatest { date ->
+            if (patients.isEmpty()) {
+                flowOf(MirrorSnapshot(emptyList(), synced = true))
+            } else {
+                CaregiverMirror.dosesForPatients(application, patients.map { it.uid }, date)
+            }
+        }
+        .map { snapshot ->
+            summarizeByPatient(patients, snapshot.items) to (snapshot.items.isEmpty() && !snapshot.synced)
+        }
+        .flowOn(Dispatchers.Default)
+        .onEach { (_, loading) -> isLoading.value = loading }
+        .map { (summaries, _) -> summaries }
+        .stateIn(viewModelScope, SharingStarted.WhileSubscribed(5_000), summarizeByPatient(patients, emptyList()))
+}
+
+class CaregiverDashboardViewModelFactory(
+    private val application: Application,
+    private val patients: List<LinkedPatient>
+) : ViewModelProvider.Factory {
+    override fun <T : ViewModel> create(modelClass: Class<T>): T {
+        if (modelClass.isAssignableFrom(CaregiverDashboardViewModel::class.java)) {
+            @Suppress("UNCHECKED_CAST")
+            return CaregiverDashboardViewModel(application, patients) as T
+        }
+        throw IllegalArgumentException("Unknown ViewModel class")
+    }
+}
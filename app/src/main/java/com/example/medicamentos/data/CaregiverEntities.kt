@@ -0,0 +1,114 @@
+package com.example.medicamentos.data
+
+import androidx.room.Entity
+import androidx.room.Index
+import com.google.firebase.firestore.IgnoreExtraProperties
+import java.util.Date
+
+/**
+ * Cópia local dos tratamentos de um paciente acompanhado no modo cuidador.
+ * Separada de `treatments`, que guarda os do próprio usuário; a chave inclui o paciente.
+ */
+@Entity(tableName = "caregiver_treatments", primaryKeys = ["patientUid", "id"])
+data class CaregiverTreatment(
+    val patientUid: String,
+    val id: Int,
+    val medicationName: String,
+    val dosage: String,
+    // Milissegundos desde a época, como o Converters grava as datas
+    val startDate: Long,
+    val durationInDays: Int,
+    val frequencyPerDay: Int,
+    val startHour: Int,
+    val startMinute: Int,
+    val intervalHours: Int,
+    val daysCompleted: Int
+)
+
+/**
+ * Cópia local das doses de um paciente acompanhado, identificadas pelo uid (o ID do documento).
+ * Também é o modelo lido da consulta collectionGroup("doses") do painel, que traz o patientUid.
+ */
+@IgnoreExtraProperties
+@Entity(
+    tableName = "caregiver_doses",
+    primaryKeys = ["patientUid", "uid"],
+    indices = [Index(value = ["patientUid", "date"])]
+)
+data class CaregiverDose(
+    val patientUid: String = "",
+    val uid: String = "",
+    val id: Int = 0,
+    val treatmentId: Int = 0,
+    val medicationName: String = "",
+    val dosage: String = "",
+    val time: String = "",
+    val date: String = "",
+    val status: MedicationStatus = MedicationStatus.PENDING,
+    val takenTimestamp: Long? = null,
+    val postponeCount: Int = 0,
+    val scheduledAt: Long = 0
+)
+
+fun Treatment.toCaregiverTreatment(patientUid: String) = CaregiverTreatment(
+    patientUid = patientUid,
+    id = id,
+    medicationName = medicationName,
+    dosage = dosage,
+    startDate = startDate.time,
+    durationInDays = durationInDays,
+    frequencyPerDay = frequencyPerDay,
+    startHour = startHour,
+    startMinute = startMinute,
+    intervalHours = intervalHours,
+    daysCompleted = daysCompleted
+)
+
+fun CaregiverTreatment.toTreatment() = Treatment(
+    id = id,
+    medicationName = medicationName,
+    dosage = dosage,
+    startDate = Date(startDate),
+    durationInDays = durationInDays,
+    frequencyPerDay = frequencyPerDay,
+    startHour = startHour,
+    startMinute = startMinute,
+    intervalHours = intervalHours,
+    daysCompleted = daysCompleted
+)
+
+fun MedicationDose.toCaregiverDose(patientUid: String): CaregiverDose {
+    val dose = withUid()
+    return CaregiverDose(
+        patientUid = patientUid,
+        uid = dose.uid,
+        id = dose.id,
+        treatmentId = dose.treatmentId,
+        medicationName = dose.medicationName,
+        dosage = dose.dosage,
+        time = dose.time,
+        date = dose.date,
+        status = dose.status,
+        takenTimestamp = dose.takenTimestamp,
+        postponeCount = dose.postponeCount,
+        scheduledAt = dose.scheduledAt
+    )
+}
+
+// Documentos antigos podem não ter o campo uid
+fun CaregiverDose.withUid(): CaregiverDose =
+    if (uid.isNotEmpty()) this else copy(uid = DoseGenerator.doseUid(treatmentId, date, time))
+
+fun CaregiverDose.toDose() = MedicationDose(
+    id = id,
+    treatmentId = treatmentId,
+    medicationName = medicationName,
+    dosage = dosage,
+    time = time,
+    date = date,
+    status = status,
+    takenTimestamp = takenTimestamp,
+    postponeCount = postponeCount,
+    scheduledAt = scheduledAt,
+    uid = uid
+)
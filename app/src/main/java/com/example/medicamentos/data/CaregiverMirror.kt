@@ -0,0 +1,108 @@
+package com.example.medicamentos.data
+
+import android.content.Context
+import android.util.Log
+import com.google.firebase.firestore.ktx.firestore
+import com.google.firebase.ktx.Firebase
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.catch
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.merge
+import kotlinx.coroutines.flow.onEach
+import kotlinx.coroutines.launch
+
+/**
+ * Dados do Room e se a nuvem já respondeu ao menos uma vez (para distinguir "vazio" de "carregando").
+ */
+data class MirrorSnapshot<T>(val items: List<T>, val synced: Boolean)
+
+/**
+ * Telas do cuidador lidas do Room, com os listeners do Firestore só mantendo a cópia local em dia.
+ *
+ * Cada fluxo emite na hora o que já está salvo (inclusive sem rede) e, enquanto alguém observa,
+ * mantém inscrito o listener correspondente no [FirestoreListenerRegistry]. Cada snapshot é
+ * comparado com o Room ([CaregiverDao.applyTreatments]/[CaregiverDao.applyDoses]) e só as
+ * diferenças são gravadas.
+ */
+object CaregiverMirror {
+
+    private const val TAG = "CaregiverMirror"
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    private fun dao(context: Context) =
+        (context.applicationContext as MedicamentosApplication).database.caregiverDao()
+
+    fun treatments(context: Context, patientUid: String): Flow<MirrorSnapshot<Treatment>> {
+        val dao = dao(context)
+        val remote = FirestoreListenerRegistry.observe(
+            Firebase.firestore.collection("users").document(patientUid).collection("treatments"),
+            Treatment::class.java
+        ).onEach { treatments ->
+            dao.applyTreatments(patientUid, treatments.map { it.toCaregiverTreatment(patientUid) })
+        }
+        val local = dao.observeTreatments(patientUid).map { rows -> rows.map { it.toTreatment() } }
+        return mirrored(local, remote)
+    }
+
+    fun doses(context: Context, patientUid: String, date: String): Flow<MirrorSnapshot<MedicationDose>> {
+        val dao = dao(context)
+        val remote = FirestoreListenerRegistry.observe(
+            Firebase.firestore.collection("users").document(patientUid).collection("doses")
+                .whereEqualTo("date", date),
+            MedicationDose::class.java
+        ).onEach { doses ->
+            dao.applyDoses(listOf(patientUid), date, doses.map { it.toCaregiverDose(patientUid) })
+        }
+        val local = dao.observeDoses(listOf(patientUid), date).map { rows -> rows.map { it.toDose() } }
+        return mirrored(local, remote)
+    }
+
+    /**
+     * Doses do dia de vários pacientes por collectionGroup("doses"), uma consulta a cada
+     * [FIRESTORE_IN_LIMIT] pacientes (limite do `whereIn`).
+     */
+    fun dosesForPatients(context: Context, patientUids: List<String>, date: String): Flow<MirrorSnapshot<CaregiverDose>> {
+        val dao = dao(context)
+        val remote = patientUids.chunked(FIRESTORE_IN_LIMIT).map { uids ->
+            FirestoreListenerRegistry.observe(
+                Firebase.firestore.collectionGroup("doses")
+                    .whereIn(FirestoreDocs.FIELD_PATIENT_UID, uids)
+                    .whereEqualTo("date", date),
+                CaregiverDose::class.java
+            ).onEach { doses -> dao.applyDoses(uids, date, doses.map { it.withUid() }) }
+        }
+        return mirrored(dao.observeDoses(patientUids, date), merge(*remote.toTypedArray()))
+    }
+
+    /** Apaga a cópia local ao sair do modo cuidador. */
+    fun clearAsync(context: Context) {
+        val dao = dao(context)
+        scope.launch { dao.clearAll() }
+    }
+
+    private fun <T> mirrored(local: Flow<List<T>>, remote: Flow<*>): Flow<MirrorSnapshot<T>> = channelFlow {
+        val synced = MutableStateFlow(false)
+        launch {
+            // Sem rede ou sem permissão a tela continua com o que já está salvo; um erro também é
+            // resposta da nuvem, senão a tela ficaria carregando para sempre
+            remote
+                .catch { e ->
+                    Log.e(TAG, "Falha ao atualizar a cópia local.", e)
+                    synced.value = true
+                }
+                .collect { synced.value = true }
+        }
+        combine(local, synced) { items, isSynced -> MirrorSnapshot(items, isSynced) }
+            .collect { send(it) }
+    }.flowOn(Dispatchers.Default)
+
+    private const val FIRESTORE_IN_LIMIT = 30
+}
@@ -1,97 +1,96 @@
 package com.example.medicamentos.data
 
+import android.app.Application
 import android.util.Log
 import androidx.compose.runtime.mutableStateOf
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.ViewModelProvider
-import com.google.firebase.firestore.ListenerRegistration
-import com.google.firebase.firestore.ktx.firestore
-import com.google.firebase.ktx.Firebase
+import androidx.lifecycle.viewModelScope
+import kotlinx.collections.immutable.ImmutableList
+import kotlinx.collections.immutable.persistentListOf
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.SharingStarted
 import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.flatMapLatest
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.onEach
+import kotlinx.coroutines.flow.stateIn
 import java.text.SimpleDateFormat
 import java.util.Date
 import java.util.Locale
 
-class CaregiverViewModel : ViewModel() {
+class CaregiverViewModel(private val application: Application) : ViewModel() {
 
-    private val db = Firebase.firestore
-    private var treatmentsListener: ListenerRegistration? = null
-    private var dosesListener: ListenerRegistration? = null
+    val isLoading = mutableStateOf(false)
+    val patientName = mutableStateOf("Paciente")
 
-    private val _treatments = MutableStateFlow<List<Treatment>>(emptyList())
-    val treatments: StateFlow<List<Treatment>> = _treatments
+    // Paciente observado e data das doses. As telas leem do Room ([CaregiverMirror]); os listeners,
+    // compartilhados com a outra tela do cuidador, só mantêm a cópia local em dia
+    private val patientQuery = MutableStateFlow<PatientQuery?>(null)
 
-    private val _doses = MutableStateFlow<List<MedicationDose>>(emptyList())
-    val doses: StateFlow<List<MedicationDose>> = _doses
+    @OptIn(ExperimentalCoroutinesApi::class)
+    val treatments: StateFlow<List<Treatment>> = patientQuery
+        .flatMapLatest { query ->
+            if (query == null) {
+                flowOf(MirrorSnapshot(emptyList(), synced = false))
+            } else {
+                CaregiverMirror.treatments(application, query.patientUid)
+            }
+        }
+        .onEach { snapshot ->
+            // Com dados salvos a tela aparece na hora; sem eles, espera a primeira resposta da nuvem
+            isLoading.value = snapshot.items.isEmpty() && !snapshot.synced && patientQuery.value != null
+            Log.d("CaregiverViewModel_Debug", "${snapshot.items.size} tratamentos (sincronizado: ${snapshot.synced}).")
+        }
+        .map { it.items }
+        .stateIn(viewModelScope, SharingStarted.WhileSubscribed(5_000), emptyList())
 
-    val isLoading = mutableStateOf(false)
-    val patientName = mutableStateOf("Paciente")
+    @OptIn(ExperimentalCoroutinesApi::class)
+    val doses: StateFlow<List<MedicationDose>> = patientQuery
+        .flatMapLatest { query ->
+            if (query == null) {
+                flowOf(emptyList())
+            } else {
+                CaregiverMirror.doses(application, query.patientUid, query.date).map { it.items }
+            }
+        }
+        .onEach { patientDoses ->
+            Log.d("CaregiverViewModel_Debug", "${patientDoses.size} doses para hoje.")
+        }
+        .stateIn(viewModelScope, SharingStarted.WhileSubscribed(5_000), emptyList())
+
+    // Doses do dia agrupadas por horário, montadas fora da thread principal
+    val doseGroups: StateFlow<ImmutableList<DoseGroupUi>> = doses
+        .map { doses -> groupDosesByTime(doses) }
+        .flowOn(Dispatchers.Default)
+        .stateIn(viewModelScope, SharingStarted.WhileSubscribed(5_000), persistentListOf())
 
     fun fetchPatientData(patientUid: String, name: String) {
         patientName.value = name
-        isLoading.value = true
         Log.d("CaregiverViewModel_Debug", "INICIANDO BUSCA de dados para o paciente UID: $patientUid")
 
-        // Limpa ouvintes antigos para evitar buscas duplicadas
-        treatmentsListener?.remove()
-        dosesListener?.remove()
-
-        // Ouve em tempo real os TRATAMENTOS
-        treatmentsListener = db.collection("users").document(patientUid)
-            .collection("treatments")
-            .addSnapshotListener { snapshot, error ->
-                isLoading.value = false // Controla o loading principal
-                if (error != null) {
-                    Log.e("CaregiverViewModel_Debug", "FALHA ao buscar tratamentos: ", error)
-                    return@addSnapshotListener
-                }
-                if (snapshot != null) {
-                    val patientTreatments = snapshot.toObjects(Treatment::class.java)
-                    _treatments.value = patientTreatments
-                    Log.d("CaregiverViewModel_Debug", "SUCESSO: ${patientTreatments.size} tratamentos encontrados.")
-                } else {
-                    Log.d("CaregiverViewModel_Debug", "Snapshot de tratamentos nulo.")
-                }
-            }
-
-        // Ouve em tempo real as DOSES do dia
         val sdf = SimpleDateFormat("yyyy-MM-dd", Locale.getDefault())
         val todayStr = sdf.format(Date())
         Log.d("CaregiverViewModel_Debug", "Buscando doses para a data: $todayStr")
 
-        dosesListener = db.collection("users").document(patientUid)
-            .collection("doses")
-            .whereEqualTo("date", todayStr)
-            .addSnapshotListener { snapshot, error ->
-                if (error != null) {
-                    Log.e("CaregiverViewModel_Debug", "FALHA ao buscar doses do dia: ", error)
-                    return@addSnapshotListener
-                }
-                if (snapshot != null) {
-                    val patientDoses = snapshot.toObjects(MedicationDose::class.java)
-                    _doses.value = patientDoses
-                    Log.d("CaregiverViewModel_Debug", "SUCESSO: ${patientDoses.size} doses encontradas para hoje.")
-                } else {
-                    Log.d("CaregiverViewModel_Debug", "Snapshot de doses nulo.")
-                }
-            }
+        // Carregando só até a primeira leitura do Room (ou da nuvem, se ainda não há nada salvo)
+        if (patientQuery.value?.patientUid != patientUid) isLoading.value = true
+        patientQuery.value = PatientQuery(patientUid, todayStr)
     }
 
-    override fun onCleared() {
-        super.onCleared()
-        treatmentsListener?.remove()
-        dosesListener?.remove()
-        Log.d("CaregiverViewModel_Debug", "ViewModel limpo, ouvintes removidos.")
-    }
+    private data class PatientQuery(val patientUid: String, val date: String)
 }
 
-class CaregiverViewModelFactory : ViewModelProvider.Factory {
+class CaregiverViewModelFactory(private val application: Application) : ViewModelProvider.Factory {
     override fun <T : ViewModel> create(modelClass: Class<T>): T {
         if (modelClass.isAssignableFrom(CaregiverViewModel::class.java)) {
             @Suppress("UNCHECKED_CAST")
-            return CaregiverViewModel() as T
+            return CaregiverViewModel(application) as T
         }
         throw IllegalArgumentException("Unknown ViewModel class")
     }
-}
\ No newline at end of file
+}
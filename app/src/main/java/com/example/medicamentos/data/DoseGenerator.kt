@@ -0,0 +1,151 @@
+package com.example.medicamentos.data
+
+import com.example.medicamentos.schedule.DoseSchedule
+import com.example.medicamentos.schedule.TreatmentSchedule
+import java.time.Instant
+import java.time.LocalDate
+import java.time.ZoneId
+import java.util.Date
+import java.util.UUID
+
+/**
+ * Motor de geração de doses.
+ *
+ * Calcula em memória o cronograma de um tratamento e compara com as doses
+ * que já existem, para que o DAO grave tudo de uma vez em uma única transação.
+ */
+object DoseGenerator {
+
+    /**
+     * Calcula as doses de um tratamento (dia x frequência), sem acessar o banco.
+     * Sem janela, devolve o tratamento inteiro; com [windowStart] e [windowDays], apenas os dias
+     * do tratamento que caem dentro da janela. As doses têm id = 0 e estão em ordem cronológica.
+     */
+    fun planDoses(
+        treatment: Treatment,
+        windowStart: Date = treatment.startDate,
+        windowDays: Int = treatment.durationInDays
+    ): List<MedicationDose> {
+        if (treatment.durationInDays <= 0 || treatment.frequencyPerDay <= 0 || windowDays <= 0) return emptyList()
+
+        val zone = ZoneId.systemDefault()
+        val schedule = treatment.toSchedule(zone)
+
+        // Dias do tratamento cobertos pela janela: [offset, offset + windowDays)
+        val offset = DoseSchedule.daysBetween(schedule.startDate, localDate(windowStart, zone))
+        val firstDay = maxOf(0, offset)
+        val lastDay = minOf(treatment.durationInDays, offset + windowDays)
+        if (firstDay >= lastDay) return emptyList()
+
+        val doses = ArrayList<MedicationDose>((lastDay - firstDay) * treatment.frequencyPerDay)
+        DoseSchedule.expand(schedule, zone, firstDay, lastDay) { date, time, epochMinute ->
+            doses.add(
+                MedicationDose(
+                    treatmentId = treatment.id,
+                    medicationName = treatment.medicationName,
+                    dosage = treatment.dosage,
+                    time = time,
+                    date = date,
+                    status = MedicationStatus.PENDING,
+                    scheduledAt = epochMinute
+                ).withUid()
+            )
+        }
+        return doses
+    }
+
+    /**
+     * Retorna as doses planejadas que ainda não existem: mesmo [MedicationDose.uid] (o que cobre doses
+     * adiadas, cujo horário mudou) ou a mesma data, horário e nome do medicamento.
+     * Doses repetidas dentro do próprio plano (intervalos que passam de 24h) também são descartadas.
+     */
+    fun missingDoses(planned: List<MedicationDose>, existing: List<MedicationDose>): List<MedicationDose> {
+        val seenKeys = HashSet<String>(2 * (existing.size + planned.size))
+        existing.forEach {
+            seenKeys.add(doseKey(it))
+            if (it.uid.isNotEmpty()) seenKeys.add(it.uid)
+        }
+        return planned.filter { dose ->
+            val isNew = dose.uid !in seenKeys && doseKey(dose) !in seenKeys
+            if (isNew) {
+                seenKeys.add(doseKey(dose))
+                seenKeys.add(dose.uid)
+            }
+            isNew
+        }
+    }
+
+    /**
+     * Compara as doses já materializadas de um tratamento ([existing]) com o novo plano ([planned]).
+     * Uma dose continua se o uid dela (o horário planejado) ainda está no plano, com o status que tiver;
+     * doses já tomadas ou perdidas nunca saem, pois são histórico. As demais são removidas, e do plano
+     * só entra o que ainda não existe.
+     */
+    fun diffSchedule(existing: List<MedicationDose>, planned: List<MedicationDose>): ScheduleDiff {
+        val plannedUids = planned.mapTo(HashSet(planned.size * 2)) { it.uid }
+        val (kept, removed) = existing.partition {
+            it.withUid().uid in plannedUids || it.status != MedicationStatus.PENDING
+        }
+        return ScheduleDiff(kept = kept, added = missingDoses(planned, kept), removed = removed)
+    }
+
+    /**
+     * Identificador estável de uma dose, derivado do horário em que ela foi planejada.
+     * É determinístico: aparelhos diferentes chegam ao mesmo uid para a mesma dose.
+     */
+    fun doseUid(treatmentId: Int, date: String, time: String): String =
+        UUID.nameUUIDFromBytes("$treatmentId|$date|$time".toByteArray()).toString()
+
+    /**
+     * Converte "yyyy-MM-dd" + "HH:mm" (hora local) em minutos desde a época.
+     * Retorna 0 se a data ou o horário estiverem mal formatados.
+     */
+    fun epochMinute(date: String, time: String): Long =
+        DoseSchedule.epochMinute(date, time, ZoneId.systemDefault())
+
+    /**
+     * Adia a dose em [minutes] (mesmo cálculo na tela inicial e na notificação). Se passar da
+     * meia-noite, a data avança junto. O uid não muda. Retorna null se a dose estiver mal formatada.
+     */
+    fun postpone(dose: MedicationDose, minutes: Int = POSTPONE_MINUTES): MedicationDose? {
+        val slot = DoseSchedule.postpone(dose.date, dose.time, minutes, ZoneId.systemDefault()) ?: return null
+        return dose.withUid().copy(
+            date = slot.date,
+            time = slot.time,
+            scheduledAt = slot.epochMinute,
+            status = MedicationStatus.PENDING,
+            postponeCount = dose.postponeCount + 1
+        )
+    }
+
+    /**
+     * Indica se o tratamento ainda tem dias a partir de [day] (usado para estender a janela).
+     */
+    fun isActiveOn(treatment: Treatment, day: Date): Boolean {
+        val zone = ZoneId.systemDefault()
+        return DoseSchedule.daysBetween(localDate(treatment.startDate, zone), localDate(day, zone)) < treatment.durationInDays
+    }
+
+    // Data de calendário no fuso do aparelho (a diferença em dias não depende das horas do horário de verão)
+    private fun localDate(date: Date, zone: ZoneId): LocalDate =
+        Instant.ofEpochMilli(date.time).atZone(zone).toLocalDate()
+
+    private fun Treatment.toSchedule(zone: ZoneId) = TreatmentSchedule(
+        startDate = localDate(startDate, zone),
+        durationInDays = durationInDays,
+        frequencyPerDay = frequencyPerDay,
+        startHour = startHour,
+        startMinute = startMinute,
+        intervalHours = intervalHours
+    )
+
+    const val POSTPONE_MINUTES = 15
+
+    private fun doseKey(dose: MedicationDose) = "${dose.date}_${dose.time}_${dose.medicationName}"
+}
+
+data class ScheduleDiff(
+    val kept: List<MedicationDose>,
+    val added: List<MedicationDose>,
+    val removed: List<MedicationDose>
+)
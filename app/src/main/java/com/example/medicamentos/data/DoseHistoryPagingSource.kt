@@ -0,0 +1,120 @@
+package com.example.medicamentos.data
+
+import androidx.paging.PagingSource
+import androidx.paging.PagingState
+import androidx.room.InvalidationTracker
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Posição de uma dose no histórico, usada como chave das páginas.
+ */
+data class DoseHistoryKey(val date: String, val time: String, val id: Int) {
+    constructor(dose: MedicationDose) : this(dose.date, dose.time, dose.id)
+}
+
+/**
+ * Histórico de doses (tomadas e perdidas), do mais recente para o mais antigo, paginado por chave.
+ *
+ * Cada página continua a partir da última dose carregada (date, time, id) em vez de usar OFFSET,
+ * então abrir o relatório ou rolar até o fim custa o mesmo com 100 ou 100 mil doses.
+ * O total e a posição da chave na recarga vêm da tabela agregada de adesão, para que a lista
+ * tenha placeholders desde o início sem contar o histórico inteiro.
+ */
+class DoseHistoryPagingSource(
+    private val dao: TreatmentDao,
+    private val invalidationTracker: InvalidationTracker
+) : PagingSource<DoseHistoryKey, MedicationDose>() {
+
+    // Qualquer mudança em daily_doses gera uma nova fonte (o Pager recarrega a partir da posição visível)
+    private val observer = object : InvalidationTracker.Observer("daily_doses") {
+        override fun onInvalidated(tables: Set<String>) = invalidate()
+    }
+    private val observerRegistered = AtomicBoolean(false)
+
+    init {
+        registerInvalidatedCallback {
+            if (observerRegistered.get()) invalidationTracker.removeObserver(observer)
+        }
+    }
+
+    override suspend fun load(params: LoadParams<DoseHistoryKey>): LoadResult<DoseHistoryKey, MedicationDose> {
+        // addObserver acessa o banco, então é feito aqui (fora da thread principal) e uma única vez
+        if (observerRegistered.compareAndSet(false, true)) {
+            invalidationTracker.addObserver(observer)
+        }
+
+        return try {
+            when (params) {
+                is LoadParams.Refresh -> refresh(params.key, params.loadSize)
+                is LoadParams.Append -> {
+                    val key = params.key
+                    val doses = dao.getHistoryAfter(key.date, key.time, key.id, params.loadSize)
+                    page(doses, prevKey = null, isLastPage = doses.size < params.loadSize)
+                }
+                is LoadParams.Prepend -> {
+                    val key = params.key
+                    val doses = dao.getHistoryBefore(key.date, key.time, key.id, params.loadSize).asReversed()
+                    LoadResult.Page(
+                        data = doses,
+                        prevKey = if (doses.size < params.loadSize) null else doses.firstOrNull()?.let { DoseHistoryKey(it) },
+                        nextKey = null
+                    )
+                }
+            }
+        } catch (e: Exception) {
+            LoadResult.Error(e)
+        }
+    }
+
+    // Carga inicial: do topo ou a partir da dose que estava visível antes da invalidação
+    private suspend fun refresh(key: DoseHistoryKey?, loadSize: Int): LoadResult<DoseHistoryKey, MedicationDose> {
+        val total = dao.countHistory()
+        if (key == null) {
+            val doses = dao.getHistoryFirstPage(loadSize)
+            return page(doses, prevKey = null, isLastPage = doses.size < loadSize, itemsBefore = 0, total = total)
+        }
+
+        // A própria dose da chave entra na página: busca a partir da posição imediatamente anterior a ela
+        val doses = dao.getHistoryAfter(key.date, key.time, key.id + 1, loadSize)
+        // Nada a partir da chave (ex: as últimas doses foram apagadas): recomeça do topo
+        if (doses.isEmpty()) return refresh(null, loadSize)
+
+        val itemsBefore = dao.countHistoryBefore(key.date, key.time, key.id)
+        return page(
+            doses,
+            prevKey = if (itemsBefore > 0) DoseHistoryKey(doses.first()) else null,
+            isLastPage = doses.size < loadSize,
+            itemsBefore = itemsBefore,
+            total = total
+        )
+    }
+
+    private fun page(
+        doses: List<MedicationDose>,
+        prevKey: DoseHistoryKey?,
+        isLastPage: Boolean,
+        itemsBefore: Int = LoadResult.Page.COUNT_UNDEFINED,
+        total: Int = LoadResult.Page.COUNT_UNDEFINED
+    ): LoadResult.Page<DoseHistoryKey, MedicationDose> {
+        val itemsAfter = when {
+            isLastPage -> 0
+            total == LoadResult.Page.COUNT_UNDEFINED || itemsBefore == LoadResult.Page.COUNT_UNDEFINED -> LoadResult.Page.COUNT_UNDEFINED
+            else -> maxOf(0, total - itemsBefore - doses.size)
+        }
+        return LoadResult.Page(
+            data = doses,
+            prevKey = prevKey,
+            nextKey = if (isLastPage) null else doses.lastOrNull()?.let { DoseHistoryKey(it) },
+            itemsBefore = itemsBefore,
+            itemsAfter = itemsAfter
+        )
+    }
+
+    /**
+     * Recarrega a partir da dose mais próxima do que estava na tela.
+     */
+    override fun getRefreshKey(state: PagingState<DoseHistoryKey, MedicationDose>): DoseHistoryKey? {
+        val anchorPosition = state.anchorPosition ?: return null
+        return state.closestItemToPosition(anchorPosition)?.let { DoseHistoryKey(it) }
+    }
+}
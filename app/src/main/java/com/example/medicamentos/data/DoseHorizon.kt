@@ -0,0 +1,114 @@
+package com.example.medicamentos.data
+
+import android.content.Context
+import android.util.Log
+import java.text.SimpleDateFormat
+import java.util.Calendar
+import java.util.Date
+import java.util.Locale
+
+/**
+ * Janela móvel de doses.
+ *
+ * Em vez de materializar o tratamento inteiro, só as doses dos próximos [DAYS] dias ficam no Room,
+ * com alarme agendado e cópia no Firestore. O [DoseHorizonWorker] avança a janela todos os dias,
+ * então um tratamento de 365 dias custa o mesmo que um de uma semana.
+ */
+object DoseHorizon {
+
+    const val DAYS = 7
+
+    /**
+     * Materializa as doses que faltam entre a última data já gerada (ou hoje) e o fim da janela.
+     * Retorna as doses inseridas, já com ID e na fila de envio ao Firestore; os alarmes são rearmados uma única vez.
+     */
+    suspend fun extend(
+        context: Context,
+        dao: TreatmentDao,
+        treatments: List<Treatment>,
+        userId: String?
+    ): List<MedicationDose> {
+        val sdfDate = SimpleDateFormat("yyyy-MM-dd", Locale.getDefault())
+        val today = startOfToday()
+        val horizonEnd = Calendar.getInstance().apply {
+            time = today
+            add(Calendar.DAY_OF_YEAR, DAYS)
+        }.time
+
+        val insertedDoses = mutableListOf<MedicationDose>()
+
+        treatments.forEach { treatment ->
+            // Recomeça pelo último dia já gerado: a deduplicação do DAO ignora o que já existe
+            val lastGenerated = dao.getLastDoseDate(treatment.id)?.let { sdfDate.parse(it) }
+            val windowStart = if (lastGenerated != null && lastGenerated.after(today)) lastGenerated else today
+            val windowDays = Math.round((horizonEnd.time - windowStart.time) / DAY_MILLIS.toDouble()).toInt()
+
+            val plannedDoses = DoseGenerator.planDoses(treatment, windowStart, windowDays)
+            val newDoses = dao.insertMissingDoses(treatment.id, plannedDoses)
+            Log.d("DoseHorizon", "${newDoses.size} doses materializadas para ${treatment.medicationName} até ${sdfDate.format(horizonEnd)}")
+            insertedDoses.addAll(newDoses)
+        }
+
+        if (insertedDoses.isNotEmpty()) {
+            AlarmScheduler.onDosesChanged(context.applicationContext, dao, insertedDoses)
+        }
+
+        if (userId != null) {
+            // O outbox divide o envio em lotes de até 500 escritas
+            Outbox.enqueue(context, insertedDoses.map { Outbox.set(FirestoreDocs.dosePath(userId, it), FirestoreDocs.dose(it)) })
+        }
+        return insertedDoses
+    }
+
+    /**
+     * Refaz a janela de um tratamento editado sem apagar tudo: só as doses cujo horário mudou são
+     * removidas e criadas, no Room, nos alarmes e no Firestore (ver [TreatmentDao.rescheduleTreatment]).
+     * Mudar apenas o nome ou a dosagem não recria nenhuma dose nem mexe em alarmes.
+     */
+    suspend fun reschedule(
+        context: Context,
+        dao: TreatmentDao,
+        treatment: Treatment,
+        userId: String?
+    ): ScheduleChanges {
+        val today = startOfToday()
+        val fromDate = SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(today)
+        val planned = DoseGenerator.planDoses(treatment, today, DAYS)
+        val changes = dao.rescheduleTreatment(treatment, fromDate, planned)
+
+        changes.removed.forEach { AlarmScheduler.cancel(context.applicationContext, it) }
+        if (changes.added.isNotEmpty() || changes.removed.isNotEmpty()) {
+            AlarmScheduler.onDosesChanged(context.applicationContext, dao, changes.added)
+        }
+
+        if (userId != null) {
+            Outbox.enqueue(
+                context,
+                listOf(Outbox.set(FirestoreDocs.treatmentPath(userId, treatment.id), FirestoreDocs.treatment(treatment))) +
+                    changes.removed.map { Outbox.delete(FirestoreDocs.dosePath(userId, it)) } +
+                    changes.added.map { Outbox.set(FirestoreDocs.dosePath(userId, it), FirestoreDocs.dose(it)) } +
+                    changes.renamed.map {
+                        Outbox.merge(
+                            FirestoreDocs.dosePath(userId, it),
+                            mapOf("medicationName" to it.medicationName, "dosage" to it.dosage)
+                        )
+                    }
+            )
+        }
+        Log.d(
+            "DoseHorizon",
+            "${treatment.medicationName} reagendado: ${changes.added.size} doses novas, " +
+                "${changes.removed.size} removidas, ${changes.renamed.size} renomeadas"
+        )
+        return changes
+    }
+
+    private fun startOfToday(): Date = Calendar.getInstance().apply {
+        set(Calendar.HOUR_OF_DAY, 0)
+        set(Calendar.MINUTE, 0)
+        set(Calendar.SECOND, 0)
+        set(Calendar.MILLISECOND, 0)
+    }.time
+
+    private const val DAY_MILLIS = 24 * 60 * 60 * 1000L
+}
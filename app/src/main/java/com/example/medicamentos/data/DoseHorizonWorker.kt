@@ -0,0 +1,42 @@
+package com.example.medicamentos.data
+
+import android.content.Context
+import android.util.Log
+import androidx.work.CoroutineWorker
+import androidx.work.WorkerParameters
+import com.google.firebase.auth.ktx.auth
+import com.google.firebase.ktx.Firebase
+import kotlinx.coroutines.flow.first
+import java.util.Date
+
+/**
+ * Avança diariamente a janela de doses materializadas (ver [DoseHorizon]).
+ */
+class DoseHorizonWorker(
+    appContext: Context,
+    workerParams: WorkerParameters
+) : CoroutineWorker(appContext, workerParams) {
+
+    override suspend fun doWork(): Result {
+        Log.d("DoseHorizonWorker", "Estendendo a janela de doses...")
+        try {
+            val dao = (applicationContext as MedicamentosApplication).database.treatmentDao()
+            val today = Date()
+
+            // Só tratamentos que ainda têm dias pela frente
+            val activeTreatments = dao.getAllTreatments().first().filter { DoseGenerator.isActiveOn(it, today) }
+            val newDoses = DoseHorizon.extend(applicationContext, dao, activeTreatments, Firebase.auth.currentUser?.uid)
+
+            Log.d("DoseHorizonWorker", "${newDoses.size} doses novas para ${activeTreatments.size} tratamentos ativos.")
+
+            // No modo PER_DOSE só a janela das próximas 48h fica armada: avança junto com a janela de doses
+            if (AlarmScheduler.mode == AlarmScheduler.Mode.PER_DOSE) {
+                AlarmRearm.rearm(applicationContext, "horizon")
+            }
+            return Result.success()
+        } catch (e: Exception) {
+            Log.e("DoseHorizonWorker", "Erro ao estender a janela de doses.", e)
+            return Result.retry()
+        }
+    }
+}
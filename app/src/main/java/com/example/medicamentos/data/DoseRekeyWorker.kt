@@ -0,0 +1,121 @@
+package com.example.medicamentos.data
+
+import android.content.Context
+import android.util.Log
+import androidx.work.CoroutineWorker
+import androidx.work.WorkerParameters
+import com.google.android.gms.tasks.Tasks
+import com.google.firebase.auth.ktx.auth
+import com.google.firebase.firestore.DocumentSnapshot
+import com.google.firebase.firestore.FieldPath
+import com.google.firebase.firestore.ktx.firestore
+import com.google.firebase.ktx.Firebase
+import java.time.LocalDate
+
+/**
+ * Migração única dos documentos de dose para o ID estável (uid).
+ *
+ * Percorre a coleção de doses do usuário em páginas e, para cada documento ainda com o ID antigo,
+ * cria o documento com o uid e enfileira no outbox a remoção do antigo. O documento novo nunca
+ * vem às cegas do antigo, que pode estar defasado (ex.: dose confirmada pela notificação depois
+ * da atualização): sai da linha do Room com o mesmo uid, que é a versão mais recente deste
+ * aparelho; sem ela, o antigo só é copiado se o documento com o uid ainda não existir.
+ * Ao terminar, marca o usuário como migrado.
+ *
+ * Na mesma passada, doses de hoje em diante que ainda não têm o campo
+ * [FirestoreDocs.FIELD_PATIENT_UID] recebem o campo, para aparecerem no painel do cuidador, e
+ * documentos antigos (doses e tratamentos) sem [FirestoreDocs.FIELD_UPDATED_AT] recebem o campo:
+ * sem ele a sincronização incremental ([SyncCoordinator]) nunca os encontraria.
+ */
+class DoseRekeyWorker(
+    appContext: Context,
+    workerParams: WorkerParameters
+) : CoroutineWorker(appContext, workerParams) {
+
+    override suspend fun doWork(): Result {
+        // Sem usuário logado não há o que migrar; o worker é agendado de novo na próxima abertura do app
+        val userId = Firebase.auth.currentUser?.uid ?: return Result.success()
+        val prefs = applicationContext.getSharedPreferences("AppPreferences", Context.MODE_PRIVATE)
+        // v2: acrescentou o preenchimento do patientUid; v3, o do updatedAt
+        val doneKey = "doseDocsRekeyed_v3_$userId"
+        if (prefs.getBoolean(doneKey, false)) return Result.success()
+
+        return try {
+            val dao = (applicationContext as MedicamentosApplication).database.treatmentDao()
+            val dosesRef = Firebase.firestore.collection("users").document(userId).collection("doses")
+            var lastDocument: DocumentSnapshot? = null
+            var rekeyed = 0
+            var backfilled = 0
+            val today = LocalDate.now().toString()
+
+            do {
+                var query = dosesRef.orderBy(FieldPath.documentId()).limit(PAGE_SIZE)
+                lastDocument?.let { query = query.startAfter(it) }
+                val page = Tasks.await(query.get())
+
+                val pageDoses = page.documents.associateWith { document ->
+                    document.toObject(MedicationDose::class.java)?.withScheduledAt()?.withUid()
+                }
+                val legacyUids = pageDoses.filter { (document, dose) -> dose != null && document.id != dose.uid }
+                    .mapNotNull { it.value?.uid }
+                val localDoses = if (legacyUids.isEmpty()) emptyMap() else dao.getDosesByUid(legacyUids).associateBy { it.uid }
+
+                val rekeyEntries = mutableListOf<OutboxEntry>()
+                val backfillEntries = mutableListOf<OutboxEntry>()
+                pageDoses.forEach { (document, dose) ->
+                    if (dose == null) return@forEach
+                    if (document.id != dose.uid) {
+                        val localDose = localDoses[dose.uid]
+                        if (localDose != null) {
+                            // O documento novo já sai com o patientUid (ver FirestoreDocs.withServerFields)
+                            rekeyEntries += Outbox.set(FirestoreDocs.dosePath(userId, localDose), FirestoreDocs.dose(localDose))
+                        } else {
+                            createIfAbsent(FirestoreDocs.dosePath(userId, dose), FirestoreDocs.dose(dose))
+                        }
+                        rekeyEntries += Outbox.delete(document.reference.path)
+                    } else if (needsBackfill(document) ||
+                        (dose.date >= today && !document.contains(FirestoreDocs.FIELD_PATIENT_UID))
+                    ) {
+                        // O envio acrescenta updatedAt e patientUid a toda escrita (ver OutboxFlusher)
+                        backfillEntries += Outbox.merge(document.reference.path, mapOf(FirestoreDocs.FIELD_PATIENT_UID to userId))
+                    }
+                }
+                Outbox.enqueue(applicationContext, rekeyEntries + backfillEntries)
+                rekeyed += rekeyEntries.count { it.operation == OutboxOperation.DELETE }
+                backfilled += backfillEntries.size
+                lastDocument = page.documents.lastOrNull()
+            } while (page.size() == PAGE_SIZE.toInt())
+
+            // Tratamentos são poucos por usuário: uma única leitura
+            val treatments = Tasks.await(Firebase.firestore.collection("users").document(userId).collection("treatments").get())
+            val treatmentEntries = treatments.documents.filter { needsBackfill(it) }
+                .map { Outbox.merge(it.reference.path, emptyMap()) }
+            Outbox.enqueue(applicationContext, treatmentEntries)
+            backfilled += treatmentEntries.size
+
+            prefs.edit().putBoolean(doneKey, true).apply()
+            Log.d("DoseRekeyWorker", "$rekeyed documentos de dose migrados para o uid, $backfilled com campos preenchidos.")
+            Result.success()
+        } catch (e: Exception) {
+            Log.e("DoseRekeyWorker", "Erro ao migrar os documentos de dose.", e)
+            Result.retry()
+        }
+    }
+
+    // Copia o documento antigo só se ainda não houver um com o uid (escrito por qualquer aparelho)
+    private fun createIfAbsent(documentPath: String, data: Map<String, Any?>) {
+        val db = Firebase.firestore
+        val ref = db.document(documentPath)
+        Tasks.await(db.runTransaction { transaction ->
+            if (!transaction.get(ref).exists()) {
+                transaction.set(ref, FirestoreDocs.withServerFields(documentPath, data))
+            }
+        })
+    }
+
+    private fun needsBackfill(document: DocumentSnapshot) = !document.contains(FirestoreDocs.FIELD_UPDATED_AT)
+
+    private companion object {
+        const val PAGE_SIZE = 500L
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.medicamentos.data
+
+import androidx.compose.runtime.Immutable
+import kotlinx.collections.immutable.ImmutableList
+import kotlinx.collections.immutable.persistentListOf
+import kotlinx.collections.immutable.toImmutableList
+
+/**
+ * Modelos imutáveis das telas de doses.
+ *
+ * [MedicationDose] tem campos `var`, então o Compose o considera instável e recompõe todo card
+ * que o recebe. Estas classes são montadas fora da thread principal (nos ViewModels) e só mudam
+ * quando o conteúdo muda, o que permite ao Compose pular as linhas que continuam iguais.
+ * Por isso guardam só cópias dos campos e listas [ImmutableList], nunca a entidade do Room:
+ * as ações da tela identificam a dose pelo [DoseRowUi.id] e o ViewModel a relê do banco.
+ */
+@Immutable
+data class DoseRowUi(
+    val id: Int,
+    val uid: String,
+    val medicationName: String,
+    val dosage: String,
+    val date: String,
+    val time: String,
+    val status: MedicationStatus,
+    val postponeCount: Int,
+    val scheduledAt: Long,
+    // Atraso (em minutos) de uma dose tomada; nulo se não foi tomada
+    val lateMinutes: Long?
+)
+
+@Immutable
+data class DoseGroupUi(
+    val time: String,
+    val doses: ImmutableList<DoseRowUi>
+)
+
+@Immutable
+data class TodayDosesUi(
+    val doses: ImmutableList<DoseRowUi> = persistentListOf(),
+    val groups: ImmutableList<DoseGroupUi> = persistentListOf(),
+    // Falso até a primeira leitura do Room (a tela só é dada como pronta depois dela)
+    val loaded: Boolean = false
+)
+
+fun MedicationDose.toRowUi(): DoseRowUi {
+    // Doses antigas podem não ter scheduledAt: converte a partir de date/time
+    val scheduledMinute = scheduledAt.takeIf { it > 0 } ?: DoseGenerator.epochMinute(date, time)
+    val taken = takenTimestamp
+    return DoseRowUi(
+        id = id,
+        uid = uid,
+        medicationName = medicationName,
+        dosage = dosage,
+        date = date,
+        time = time,
+        status = status,
+        postponeCount = postponeCount,
+        scheduledAt = scheduledMinute,
+        lateMinutes = if (status == MedicationStatus.TAKEN && taken != null && scheduledMinute > 0) {
+            taken / 60_000L - scheduledMinute
+        } else {
+            null
+        }
+    )
+}
+
+/**
+ * Ordena por horário e agrupa as doses que vencem no mesmo horário (cabeçalho + cards).
+ */
+fun groupDosesByTime(doses: List<MedicationDose>): ImmutableList<DoseGroupUi> =
+    groupRowsByTime(doses.map { it.toRowUi() })
+
+fun groupRowsByTime(rows: List<DoseRowUi>): ImmutableList<DoseGroupUi> =
+    rows.sortedBy { it.time }
+        .groupBy { it.time }
+        .map { (time, rowsInTime) -> DoseGroupUi(time, rowsInTime.toImmutableList()) }
+        .toImmutableList()
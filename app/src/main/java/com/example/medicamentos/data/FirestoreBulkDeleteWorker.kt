@@ -0,0 +1,88 @@
+package com.example.medicamentos.data
+
+import android.content.Context
+import android.util.Log
+import androidx.work.BackoffPolicy
+import androidx.work.Constraints
+import androidx.work.CoroutineWorker
+import androidx.work.NetworkType
+import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.WorkerParameters
+import androidx.work.workDataOf
+import com.google.firebase.firestore.Query
+import com.google.firebase.firestore.ktx.firestore
+import com.google.firebase.ktx.Firebase
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+
+/**
+ * Apaga em segundo plano os documentos de uma coleção (todos, ou os com [KEY_FIELD] = [KEY_INT_VALUE])
+ * usando o [FirestoreBulkDeleter]. Só roda com rede; o progresso sai em [PROGRESS_DELETED] e o total
+ * em [OUTPUT_DELETED], observáveis pelo WorkManager.
+ *
+ * Roda na cadeia do outbox ([Outbox.enqueueAfterFlush]), depois do envio do que estava na fila e
+ * nunca junto com outro envio: uma escrita atrasada para um desses documentos o recriaria depois.
+ */
+class FirestoreBulkDeleteWorker(
+    appContext: Context,
+    workerParams: WorkerParameters
+) : CoroutineWorker(appContext, workerParams) {
+
+    override suspend fun doWork(): Result {
+        val collectionPath = inputData.getString(KEY_COLLECTION_PATH) ?: return Result.failure()
+        val field = inputData.getString(KEY_FIELD)
+
+        var query: Query = Firebase.firestore.collection(collectionPath)
+        if (field != null) query = query.whereEqualTo(field, inputData.getInt(KEY_INT_VALUE, 0))
+
+        return try {
+            val deleted = FirestoreBulkDeleter().delete(query) { deletedSoFar ->
+                setProgress(workDataOf(PROGRESS_DELETED to deletedSoFar))
+            }
+            Log.d(TAG, "$deleted documentos apagados de $collectionPath${field?.let { " ($it)" }.orEmpty()}.")
+            Result.success(workDataOf(OUTPUT_DELETED to deleted))
+        } catch (e: Exception) {
+            Log.e(TAG, "Falha ao apagar documentos de $collectionPath (tentativa ${runAttemptCount + 1}).", e)
+            Result.retry()
+        }
+    }
+
+    companion object {
+        private const val TAG = "FirestoreBulkDelete"
+
+        const val KEY_COLLECTION_PATH = "collectionPath"
+        const val KEY_FIELD = "field"
+        const val KEY_INT_VALUE = "intValue"
+        const val PROGRESS_DELETED = "deleted"
+        const val OUTPUT_DELETED = "deleted"
+
+        private const val BACKOFF_SECONDS = 30L
+
+        /** Doses de um tratamento apagado. */
+        fun enqueueTreatmentDoses(context: Context, userId: String, treatmentId: Int) =
+            enqueue(context, "users/$userId/doses", "treatmentId", treatmentId)
+
+        /** Retorna o ID do trabalho, para acompanhar o progresso pelo WorkManager. */
+        fun enqueue(context: Context, collectionPath: String, field: String? = null, value: Int = 0): UUID {
+            val constraints = Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build()
+
+            val request = OneTimeWorkRequestBuilder<FirestoreBulkDeleteWorker>()
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .setInputData(
+                    workDataOf(
+                        KEY_COLLECTION_PATH to collectionPath,
+                        KEY_FIELD to field,
+                        KEY_INT_VALUE to value
+                    )
+                )
+                .build()
+
+            // Pedir a mesma limpeza duas vezes só apaga de novo o que sobrou (nada)
+            Outbox.enqueueAfterFlush(context, request)
+            return request.id
+        }
+    }
+}
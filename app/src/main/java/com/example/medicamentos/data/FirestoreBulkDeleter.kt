@@ -0,0 +1,57 @@
+package com.example.medicamentos.data
+
+import com.google.android.gms.tasks.Tasks
+import com.google.firebase.firestore.FirebaseFirestore
+import com.google.firebase.firestore.Query
+import com.google.firebase.firestore.Source
+import com.google.firebase.firestore.ktx.firestore
+import com.google.firebase.ktx.Firebase
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.withContext
+
+/**
+ * Apaga do Firestore todos os documentos de uma consulta, sem limite de quantidade.
+ *
+ * Lê os documentos em páginas (direto do servidor, para não repetir o que o cache ainda mostra),
+ * divide cada página em lotes de até [Outbox.BATCH_LIMIT] escritas (limite do Firestore) e confirma
+ * até [parallelBatches] lotes ao mesmo tempo. Como os documentos apagados saem da consulta, a
+ * próxima página é sempre a primeira de novo, até vir vazia.
+ */
+class FirestoreBulkDeleter(
+    private val db: FirebaseFirestore = Firebase.firestore,
+    private val batchLimit: Int = Outbox.BATCH_LIMIT,
+    private val parallelBatches: Int = PARALLEL_BATCHES
+) {
+
+    /**
+     * Retorna quantos documentos foram apagados; [onProgress] recebe o total acumulado a cada página.
+     * Uma falha interrompe com exceção: o que já foi confirmado fica apagado e basta repetir.
+     */
+    suspend fun delete(query: Query, onProgress: suspend (deleted: Int) -> Unit = {}): Int {
+        val pageQuery = query.limit((batchLimit * parallelBatches).toLong())
+        var deleted = 0
+        while (true) {
+            val page = withContext(Dispatchers.IO) { Tasks.await(pageQuery.get(Source.SERVER)) }
+            if (page.isEmpty) return deleted
+
+            coroutineScope {
+                page.documents.chunked(batchLimit).map { chunk ->
+                    async(Dispatchers.IO) {
+                        val batch = db.batch()
+                        chunk.forEach { batch.delete(it.reference) }
+                        Tasks.await(batch.commit())
+                    }
+                }.awaitAll()
+            }
+            deleted += page.size()
+            onProgress(deleted)
+        }
+    }
+
+    private companion object {
+        const val PARALLEL_BATCHES = 4
+    }
+}
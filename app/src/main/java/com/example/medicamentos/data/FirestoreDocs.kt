@@ -0,0 +1,82 @@
+package com.example.medicamentos.data
+
+import com.google.firebase.firestore.FieldValue
+
+/**
+ * Converte os modelos locais nos documentos gravados no Firestore.
+ *
+ * Todo documento leva o campo [FIELD_UPDATED_AT] preenchido pelo servidor, que é o que
+ * permite à sincronização buscar apenas o que mudou desde a última vez (ver [SyncCursorStore]).
+ * Como as escritas passam pelo outbox, esse campo é acrescentado no envio ([FirestoreRemoteStore]).
+ */
+object FirestoreDocs {
+
+    const val FIELD_UPDATED_AT = "updatedAt"
+
+    // Dono do documento de dose, para consultas por collectionGroup("doses") (painel do cuidador)
+    const val FIELD_PATIENT_UID = "patientUid"
+
+    // O uid da dose é o ID do documento, então mudar o horário não troca o documento
+    fun doseDocId(dose: MedicationDose) = dose.withUid().uid
+
+    // ID usado antes do uid; só serve para achar documentos antigos (ver [DoseRekeyWorker])
+    fun legacyDoseDocId(dose: MedicationDose) =
+        "${dose.treatmentId}_${dose.date}_${dose.time}_${dose.medicationName.hashCode()}"
+
+    // Todo documento do app fica sob o usuário; é assim que o outbox sabe de quem é cada escrita
+    fun userPrefix(userId: String) = "users/$userId/"
+
+    fun dosePath(userId: String, dose: MedicationDose) = "users/$userId/doses/${doseDocId(dose)}"
+
+    fun dosePath(userId: String, dose: DoseRef) = dosePath(userId, dose.uid)
+
+    fun dosePath(userId: String, doseUid: String) = "users/$userId/doses/$doseUid"
+
+    // "users/{uid}/doses/{doc}" -> uid; nulo para qualquer outro caminho
+    fun doseOwner(documentPath: String): String? {
+        val segments = documentPath.split('/')
+        return if (segments.size == 4 && segments[0] == "users" && segments[2] == "doses") segments[1] else null
+    }
+
+    fun treatmentPath(userId: String, treatmentId: Int) = "users/$userId/treatments/$treatmentId"
+
+    // Campos preenchidos no envio: updatedAt pelo servidor e, nas doses, o dono derivado do caminho
+    fun withServerFields(documentPath: String, data: Map<String, Any?>?): Map<String, Any?> {
+        val fields = data.orEmpty() + (FIELD_UPDATED_AT to FieldValue.serverTimestamp())
+        val owner = doseOwner(documentPath) ?: return fields
+        return fields + (FIELD_PATIENT_UID to owner)
+    }
+
+    fun dose(dose: MedicationDose): Map<String, Any?> = mapOf(
+        "id" to dose.id,
+        "treatmentId" to dose.treatmentId,
+        "medicationName" to dose.medicationName,
+        "dosage" to dose.dosage,
+        "time" to dose.time,
+        "date" to dose.date,
+        "status" to dose.status.name,
+        "takenTimestamp" to dose.takenTimestamp,
+        "postponeCount" to dose.postponeCount,
+        "scheduledAt" to dose.scheduledAt,
+        "uid" to doseDocId(dose)
+    )
+
+    // Apenas os campos que mudam ao confirmar uma dose
+    fun doseStatus(dose: MedicationDose): Map<String, Any?> = mapOf(
+        "status" to dose.status.name,
+        "takenTimestamp" to dose.takenTimestamp
+    )
+
+    fun treatment(treatment: Treatment): Map<String, Any?> = mapOf(
+        "id" to treatment.id,
+        "medicationName" to treatment.medicationName,
+        "dosage" to treatment.dosage,
+        "startDate" to treatment.startDate,
+        "durationInDays" to treatment.durationInDays,
+        "frequencyPerDay" to treatment.frequencyPerDay,
+        "startHour" to treatment.startHour,
+        "startMinute" to treatment.startMinute,
+        "intervalHours" to treatment.intervalHours,
+        "daysCompleted" to treatment.daysCompleted
+    )
+}
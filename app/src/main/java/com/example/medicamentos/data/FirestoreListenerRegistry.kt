@@ -0,0 +1,83 @@
+package com.example.medicamentos.data
+
+import android.util.Log
+import com.google.firebase.firestore.Query
+import com.google.firebase.firestore.QuerySnapshot
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.SharingStarted
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.catch
+import kotlinx.coroutines.flow.conflate
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.onCompletion
+import kotlinx.coroutines.flow.shareIn
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Listeners do Firestore compartilhados pelo processo inteiro.
+ *
+ * Telas diferentes que observam a mesma consulta (ex.: início e cronograma do cuidador) usam
+ * o mesmo `addSnapshotListener`: o primeiro inscrito abre o listener, os seguintes recebem o
+ * último resultado na hora, e ele só é removido [STOP_TIMEOUT_MS] depois do último sair, o que
+ * cobre a troca de tela sem baixar tudo de novo. Rajadas de snapshots são conflacionadas: quem
+ * está atrasado recebe só o mais recente.
+ *
+ * Um erro no listener (ex.: PERMISSION_DENIED) encerra o fluxo: o Firestore não chama mais aquele
+ * listener, então os inscritos recebem a exceção e a entrada sai do mapa, assim como quando o
+ * compartilhamento para por falta de inscritos. O próximo inscrito abre um listener novo.
+ */
+object FirestoreListenerRegistry {
+
+    private const val TAG = "FirestoreListeners"
+    private const val STOP_TIMEOUT_MS = 5_000L
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+    // Chave: a consulta (Query implementa equals/hashCode) e o tipo dos documentos
+    private val flows = ConcurrentHashMap<Pair<Query, Class<*>>, SharedFlow<Result<List<*>>>>()
+
+    /**
+     * Documentos da consulta convertidos para [type], atualizados em tempo real.
+     * A conversão (toObjects) roda uma vez por snapshot, fora da thread principal, para todos os inscritos.
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun <T : Any> observe(query: Query, type: Class<T>): Flow<List<T>> {
+        val key = query to type
+        val shared = flows.getOrPut(key) { share(key, query, type) } as SharedFlow<Result<List<T>>>
+        return shared.map { it.getOrThrow() }
+    }
+
+    // O erro vira um valor: o shareIn não repassa exceções do fluxo de origem aos inscritos
+    private fun <T : Any> share(key: Pair<Query, Class<*>>, query: Query, type: Class<T>): SharedFlow<Result<List<*>>> {
+        lateinit var shared: SharedFlow<Result<List<*>>>
+        shared = callbackFlow {
+            Log.d(TAG, "Abrindo listener para ${type.simpleName}")
+            val registration = query.addSnapshotListener { snapshot, error ->
+                if (error != null) {
+                    Log.e(TAG, "Falha no listener de ${type.simpleName}", error)
+                    close(error)
+                    return@addSnapshotListener
+                }
+                if (snapshot != null) trySend(snapshot)
+            }
+            awaitClose {
+                Log.d(TAG, "Removendo listener de ${type.simpleName}")
+                registration.remove()
+            }
+        }
+            .conflate()
+            .map<QuerySnapshot, Result<List<*>>> { snapshot -> Result.success(snapshot.toObjects(type)) }
+            .catch { e -> emit(Result.failure(e)) }
+            // Parou (sem inscritos) ou falhou: sai do mapa, inclusive as consultas de dias que já passaram
+            .onCompletion { flows.remove(key, shared) }
+            .flowOn(Dispatchers.Default)
+            .shareIn(scope, SharingStarted.WhileSubscribed(STOP_TIMEOUT_MS), replay = 1)
+        return shared
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.medicamentos.data
+
+import android.content.Context
+
+data class LinkedPatient(val uid: String, val name: String)
+
+/**
+ * Pacientes vinculados a este aparelho no modo cuidador (um por QR Code lido).
+ *
+ * Fica nas "AppPreferences", junto de KEY_PATIENT_UID/KEY_PATIENT_NAME, que continuam
+ * apontando para o último paciente aberto; sair do modo cuidador limpa tudo.
+ */
+object LinkedPatients {
+
+    private const val KEY_LINKED_PATIENTS = "KEY_LINKED_PATIENTS"
+
+    fun all(context: Context): List<LinkedPatient> {
+        val prefs = context.getSharedPreferences("AppPreferences", Context.MODE_PRIVATE)
+        // O último paciente aberto entra mesmo se o vínculo foi feito antes desta lista existir
+        val lastUid = prefs.getString("KEY_PATIENT_UID", null)
+        val uids = prefs.getStringSet(KEY_LINKED_PATIENTS, emptySet()).orEmpty() + listOfNotNull(lastUid)
+        return uids.map { uid ->
+            val name = prefs.getString(nameKey(uid), null)
+                ?: prefs.getString("KEY_PATIENT_NAME", null)?.takeIf { uid == lastUid }
+                ?: "Paciente"
+            LinkedPatient(uid, name)
+        }.sortedBy { it.name }
+    }
+
+    fun add(context: Context, patient: LinkedPatient) {
+        val prefs = context.getSharedPreferences("AppPreferences", Context.MODE_PRIVATE)
+        // O Set devolvido pelo SharedPreferences não pode ser alterado: grava uma cópia
+        val uids = prefs.getStringSet(KEY_LINKED_PATIENTS, emptySet()).orEmpty() + patient.uid
+        with(prefs.edit()) {
+            putStringSet(KEY_LINKED_PATIENTS, uids)
+            putString(nameKey(patient.uid), patient.name)
+            apply()
+        }
+    }
+
+    private fun nameKey(uid: String) = "KEY_PATIENT_NAME_$uid"
+}
@@ -1,12 +1,24 @@
 package com.example.medicamentos.data
 
 import android.os.Parcelable
+import androidx.room.ColumnInfo
 import androidx.room.Entity
+import androidx.room.Index
 import androidx.room.PrimaryKey
+import com.google.firebase.firestore.IgnoreExtraProperties
 import kotlinx.parcelize.Parcelize
 
 @Parcelize
-@Entity(tableName = "daily_doses")
+@IgnoreExtraProperties
+@Entity(
+    tableName = "daily_doses",
+    indices = [
+        Index(value = ["date", "time"]),
+        Index(value = ["treatmentId", "scheduledAt"]),
+        Index(value = ["status", "scheduledAt"]),
+        Index(value = ["uid"], unique = true)
+    ]
+)
 data class MedicationDose(
     @PrimaryKey(autoGenerate = true)
     val id: Int = 0,
@@ -17,9 +29,27 @@ data class MedicationDose(
     val date: String = "",
     var status: MedicationStatus = MedicationStatus.PENDING,
     var takenTimestamp: Long? = null,
-    val postponeCount: Int = 0
+    val postponeCount: Int = 0,
+    // Horário agendado em minutos desde a época (derivado de date + time), usado nas consultas por intervalo
+    @ColumnInfo(defaultValue = "0")
+    val scheduledAt: Long = 0,
+    // Identificador estável da dose: não muda quando o horário muda e é o ID do documento no Firestore
+    @ColumnInfo(defaultValue = "''")
+    val uid: String = ""
 ) : Parcelable
 
+/**
+ * Recalcula [MedicationDose.scheduledAt] a partir de date/time. Use sempre que o horário da dose mudar.
+ */
+fun MedicationDose.withScheduledAt(): MedicationDose =
+    copy(scheduledAt = DoseGenerator.epochMinute(date, time))
+
+/**
+ * Preenche [MedicationDose.uid] em doses que ainda não têm (documentos e linhas antigos).
+ */
+fun MedicationDose.withUid(): MedicationDose =
+    if (uid.isNotEmpty()) this else copy(uid = DoseGenerator.doseUid(treatmentId, date, time))
+
 @Parcelize
 enum class MedicationStatus : Parcelable {
     PENDING,
@@ -0,0 +1,32 @@
+package com.example.medicamentos.data
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.SharingStarted
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.stateIn
+
+/**
+ * Relógio único do app, em minutos desde a época (mesma unidade de [MedicationDose.scheduledAt]).
+ *
+ * Um só temporizador para o processo inteiro: acorda na virada de cada minuto, e apenas enquanto
+ * alguma tela estiver observando. Os cards derivam seu estado daqui em vez de cada um ter seu laço.
+ */
+object MinuteClock {
+
+    private const val MINUTE_MILLIS = 60 * 1000L
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+    val currentMinute: StateFlow<Long> = flow {
+        while (true) {
+            val now = System.currentTimeMillis()
+            emit(now / MINUTE_MILLIS)
+            // Dorme só até o próximo minuto cheio, para não acumular atraso
+            delay(MINUTE_MILLIS - now % MINUTE_MILLIS)
+        }
+    }.stateIn(scope, SharingStarted.WhileSubscribed(5_000), System.currentTimeMillis() / MINUTE_MILLIS)
+}
@@ -0,0 +1,69 @@
+package com.example.medicamentos.data
+
+import android.content.Context
+import android.util.Log
+import com.google.firebase.auth.ktx.auth
+import com.google.firebase.ktx.Firebase
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Marca como esquecidas (MISSED) as doses que passaram do prazo sem confirmação.
+ *
+ * Não olha só "ontem": qualquer dose pendente agendada há mais de [GRACE_MINUTES] entra, então
+ * dias em que o worker não rodou são recuperados na próxima varredura. Roda pelo
+ * [MissedDoseWorker], ao abrir a tela inicial e depois de cada alarme.
+ */
+object MissedDoseSweeper {
+
+    private const val TAG = "MissedDoseSweeper"
+    private const val MINUTE_MILLIS = 60 * 1000L
+
+    // Mesmo prazo em que os botões do card continuam habilitados (4h depois do horário)
+    const val GRACE_MINUTES = 240L
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val lastSweepMinute = AtomicLong(0)
+
+    /**
+     * Varre e enfileira no outbox só as doses afetadas. Retorna as doses marcadas.
+     */
+    suspend fun sweep(context: Context, nowMillis: Long = System.currentTimeMillis()): List<DoseRef> {
+        val nowMinute = nowMillis / MINUTE_MILLIS
+        lastSweepMinute.set(nowMinute)
+
+        val dao = (context.applicationContext as MedicamentosApplication).database.treatmentDao()
+        val missed = dao.sweepMissedDoses(cutoffMinute = nowMinute - GRACE_MINUTES)
+        if (missed.isEmpty()) return missed
+
+        Log.d(TAG, "${missed.size} doses marcadas como esquecidas.")
+        val userId = Firebase.auth.currentUser?.uid
+        if (userId != null) {
+            val status = mapOf("status" to MedicationStatus.MISSED.name)
+            Outbox.enqueue(context, missed.map { Outbox.merge(FirestoreDocs.dosePath(userId, it), status) })
+        }
+        return missed
+    }
+
+    /**
+     * Varredura oportunista: no máximo uma por minuto e sem lançar exceção (usada pelos alarmes,
+     * que não podem falhar por causa dela).
+     */
+    suspend fun sweepIfDue(context: Context) {
+        if (lastSweepMinute.get() == System.currentTimeMillis() / MINUTE_MILLIS) return
+        try {
+            sweep(context)
+        } catch (e: Exception) {
+            Log.e(TAG, "Falha na varredura de doses esquecidas.", e)
+        }
+    }
+
+    /** Mesmo que [sweepIfDue], sem bloquear quem chamou (ex.: ao abrir a tela inicial). */
+    fun sweepAsync(context: Context) {
+        val appContext = context.applicationContext
+        scope.launch { sweepIfDue(appContext) }
+    }
+}
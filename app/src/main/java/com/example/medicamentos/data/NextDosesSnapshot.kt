@@ -0,0 +1,172 @@
+package com.example.medicamentos.data
+
+import android.content.Context
+import android.util.Log
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.io.FileOutputStream
+import java.io.RandomAccessFile
+import java.nio.BufferUnderflowException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * Cópia binária compacta das doses pendentes das próximas [WINDOW_MINUTES], lida pelo
+ * [AlarmReceiver] via arquivo mapeado em memória: com o processo frio, a notificação sai sem
+ * esperar o Room abrir. O Room continua sendo a fonte da verdade e confere a notificação logo depois.
+ *
+ * Reescrito a cada mudança no cronograma ([AlarmScheduler.onDosesChanged]), no rearme e a cada alarme.
+ *
+ * Formato (big-endian): cabeçalho `magic, versão, início e fim da janela (minutos), quantidade`,
+ * seguido das doses em ordem de horário: `id, scheduledAt (minutos, Int), postponeCount (byte),
+ * nome e dosagem (UTF-8 com tamanho em Short)`.
+ */
+object NextDosesSnapshot {
+
+    private const val TAG = "NextDosesSnapshot"
+    private const val MINUTE_MILLIS = 60 * 1000L
+
+    // Mesma janela do rearme no modo PER_DOSE
+    const val WINDOW_MINUTES = AlarmRearm.WINDOW_MINUTES
+
+    private const val FILE_NAME = "next_doses.bin"
+
+    private const val MAGIC = 0x4D444E53 // "MDNS"
+    private const val VERSION: Short = 1
+    private const val HEADER_BYTES = 4 + 2 + 4 + 4 + 4
+    private const val MAX_TEXT_BYTES = Short.MAX_VALUE.toInt()
+
+    private val writeMutex = Mutex()
+
+    /** Doses pendentes de uma janela: [pendingBetween] retorna null se o intervalo pedido não está coberto. */
+    class Snapshot(val fromMinute: Long, val toMinute: Long, val doses: List<MedicationDose>) {
+
+        fun pendingBetween(from: Long, to: Long): List<MedicationDose>? =
+            if (from < fromMinute || to > toMinute) null else doses.filter { it.scheduledAt in from..to }
+
+        fun findById(doseId: Int): MedicationDose? = doses.firstOrNull { it.id == doseId }
+    }
+
+    /**
+     * Regrava o arquivo com as doses pendentes a partir de agora (incluindo a janela de agrupamento
+     * do [AlarmReceiver] que acabou de começar). A troca é atômica: grava num temporário e renomeia.
+     */
+    suspend fun rewrite(context: Context, dao: TreatmentDao) = withContext<Unit>(Dispatchers.IO) {
+        try {
+            writeMutex.withLock {
+                val nowMinute = System.currentTimeMillis() / MINUTE_MILLIS
+                val fromMinute = nowMinute - AlarmReceiver.COALESCE_WINDOW_MINUTES
+                val toMinute = nowMinute + WINDOW_MINUTES
+                val doses = dao.getPendingDosesBetween(fromMinute, toMinute)
+
+                val file = snapshotFile(context)
+                val tempFile = File(file.parentFile, "$FILE_NAME.tmp")
+                FileOutputStream(tempFile).use { output ->
+                    val buffer = encode(doses, fromMinute, toMinute)
+                    while (buffer.hasRemaining()) output.channel.write(buffer)
+                    output.channel.force(false)
+                }
+                if (!tempFile.renameTo(file)) {
+                    tempFile.delete()
+                    Log.e(TAG, "Falha ao substituir o snapshot das próximas doses.")
+                    return@withLock
+                }
+                Log.d(TAG, "Snapshot regravado: ${doses.size} doses até o minuto $toMinute")
+            }
+        } catch (e: Exception) {
+            // Sem snapshot o receiver só volta a ler do Room
+            Log.e(TAG, "Erro ao gravar o snapshot das próximas doses", e)
+        }
+    }
+
+    /**
+     * Lê o snapshot sem abrir o Room. Retorna null se o arquivo não existe ou está inválido.
+     */
+    fun read(context: Context): Snapshot? {
+        val file = snapshotFile(context)
+        if (!file.exists()) return null
+        return try {
+            RandomAccessFile(file, "r").use { raf ->
+                decode(raf.channel.map(FileChannel.MapMode.READ_ONLY, 0, raf.length()))
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Erro ao ler o snapshot das próximas doses", e)
+            null
+        }
+    }
+
+    /** Apaga o snapshot (logout/limpeza dos dados locais). */
+    fun clear(context: Context) {
+        snapshotFile(context).delete()
+    }
+
+    // Fica fora do backup automático: restaurar a cópia de outro aparelho tocaria doses erradas
+    private fun snapshotFile(context: Context) = File(context.noBackupFilesDir, FILE_NAME)
+
+    internal fun encode(doses: List<MedicationDose>, fromMinute: Long, toMinute: Long): ByteBuffer {
+        val names = doses.map { utf8(it.medicationName) }
+        val dosages = doses.map { utf8(it.dosage) }
+        val size = HEADER_BYTES + doses.indices.sumOf { 4 + 4 + 1 + 2 + names[it].size + 2 + dosages[it].size }
+
+        val buffer = ByteBuffer.allocate(size)
+            .putInt(MAGIC)
+            .putShort(VERSION)
+            // Minutos desde a época cabem em Int até o ano 6000
+            .putInt(fromMinute.toInt())
+            .putInt(toMinute.toInt())
+            .putInt(doses.size)
+        doses.forEachIndexed { index, dose ->
+            buffer.putInt(dose.id)
+                .putInt(dose.scheduledAt.toInt())
+                .put(dose.postponeCount.coerceIn(0, Byte.MAX_VALUE.toInt()).toByte())
+            putText(buffer, names[index])
+            putText(buffer, dosages[index])
+        }
+        buffer.flip()
+        return buffer
+    }
+
+    internal fun decode(buffer: ByteBuffer): Snapshot? {
+        return try {
+            if (buffer.int != MAGIC || buffer.short != VERSION) return null
+            val fromMinute = buffer.int.toLong()
+            val toMinute = buffer.int.toLong()
+            val count = buffer.int
+            if (count < 0) return null
+
+            val doses = ArrayList<MedicationDose>(count)
+            repeat(count) {
+                doses += MedicationDose(
+                    id = buffer.int,
+                    scheduledAt = buffer.int.toLong(),
+                    postponeCount = buffer.get().toInt(),
+                    medicationName = getText(buffer),
+                    dosage = getText(buffer),
+                    status = MedicationStatus.PENDING
+                )
+            }
+            Snapshot(fromMinute, toMinute, doses)
+        } catch (e: BufferUnderflowException) {
+            // Arquivo truncado: trata como ausente
+            null
+        }
+    }
+
+    private fun utf8(text: String): ByteArray {
+        val bytes = text.toByteArray(Charsets.UTF_8)
+        return if (bytes.size <= MAX_TEXT_BYTES) bytes else bytes.copyOf(MAX_TEXT_BYTES)
+    }
+
+    private fun putText(buffer: ByteBuffer, bytes: ByteArray) {
+        buffer.putShort(bytes.size.toShort()).put(bytes)
+    }
+
+    private fun getText(buffer: ByteBuffer): String {
+        val bytes = ByteArray(buffer.short.toInt())
+        buffer.get(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+}
@@ -4,18 +4,12 @@ import android.content.BroadcastReceiver
 import android.content.Context
 import android.content.Intent
 import android.util.Log
-import androidx.core.app.NotificationManagerCompat
 import com.example.medicamentos.data.RingtonePlayerService
 import com.google.firebase.auth.ktx.auth
-import com.google.firebase.firestore.ktx.firestore
 import com.google.firebase.ktx.Firebase
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
-import java.text.SimpleDateFormat
-import java.util.Calendar
-import java.util.Date
-import java.util.Locale
 
 class NotificationActionReceiver : BroadcastReceiver() {
 
@@ -24,6 +18,7 @@ class NotificationActionReceiver : BroadcastReceiver() {
         RingtonePlayerService.stop()
 
         val notificationId = intent.getIntExtra("NOTIFICATION_ID", 0)
+        val summaryId = intent.getIntExtra("SUMMARY_ID", 0)
         val doseId = intent.getIntExtra("DOSE_ID", 0)
 
         if (doseId == 0) return
@@ -35,7 +30,6 @@ class NotificationActionReceiver : BroadcastReceiver() {
             try {
                 // ✨ Instâncias do Firebase e do DAO
                 val dao = (context.applicationContext as MedicamentosApplication).database.treatmentDao()
-                val db = Firebase.firestore
                 val auth = Firebase.auth
                 val userId = auth.currentUser?.uid ?: run {
                     Log.e("NotificationAction", "Usuário não logado, não é possível sincronizar.")
@@ -54,69 +48,29 @@ class NotificationActionReceiver : BroadcastReceiver() {
                             dao.updateDose(updatedDose)
 
                             AlarmScheduler.cancel(context, updatedDose)
+                            AlarmScheduler.onDosesChanged(context, dao, listOf(updatedDose))
                             Log.d("NotificationAction", "Alarme para a dose $doseId cancelado após confirmação na notificação.")
 
-                            // 2. Atualiza no Firestore
-                            val doseDocId = "${dose.treatmentId}_${dose.date}_${dose.time}_${dose.medicationName.hashCode()}"
-                            db.collection("users").document(userId).collection("doses").document(doseDocId)
-                                .update("status", MedicationStatus.TAKEN)
-                                .addOnSuccessListener { Log.d("NotificationAction", "Dose ID $doseId confirmada no Firestore.") }
-                                .addOnFailureListener { e -> Log.e("NotificationAction", "Erro ao confirmar dose no Firestore", e) }
+                            // 2. Enfileira a atualização para o Firestore (enviada pelo OutboxWorker)
+                            Outbox.enqueue(context, Outbox.merge(FirestoreDocs.dosePath(userId, dose), FirestoreDocs.doseStatus(updatedDose)))
+                            Log.d("NotificationAction", "Confirmação da dose ID $doseId na fila do Firestore.")
                         }
                     }
                     "ACTION_POSTPONE" -> {
                         val dose = dao.getDoseById(doseId)
                         if (dose != null) {
-                            if (dose.postponeCount < 2) {
-                                // Calcula o novo horário (+15 minutos)
-                                val sdf = SimpleDateFormat("HH:mm", Locale.getDefault())
-                                val calendar = Calendar.getInstance().apply {
-                                    time = sdf.parse(dose.time) ?: Date()
-                                    add(Calendar.MINUTE, 15)
-                                }
-                                val newTime = sdf.format(calendar.time)
-
+                            // Calcula o novo horário (+15 minutos)
+                            val updatedDose = if (dose.postponeCount < 2) DoseGenerator.postpone(dose) else null
+                            if (updatedDose != null) {
                                 // 1. Atualiza localmente
-                                val updatedDose = dose.copy(
-                                    time = newTime,
-                                    postponeCount = dose.postponeCount + 1
-                                )
                                 dao.updateDose(updatedDose)
 
-                                // 2. Atualiza no Firestore (deletando o antigo e criando o novo)
-                                val oldDoseDocId =
-                                    "${dose.treatmentId}_${dose.date}_${dose.time}_${dose.medicationName.hashCode()}"
-                                val newDoseDocId =
-                                    "${updatedDose.treatmentId}_${updatedDose.date}_${updatedDose.time}_${updatedDose.medicationName.hashCode()}"
-
-                                val oldDocRef =
-                                    db.collection("users").document(userId).collection("doses")
-                                        .document(oldDoseDocId)
-                                val newDocRef =
-                                    db.collection("users").document(userId).collection("doses")
-                                        .document(newDoseDocId)
-
-                                db.runBatch { batch ->
-                                    batch.delete(oldDocRef)
-                                    batch.set(newDocRef, updatedDose)
-                                }
-                                    .addOnSuccessListener {
-                                        Log.d(
-                                            "NotificationAction",
-                                            "Dose ID $doseId adiada no Firestore."
-                                        )
-                                    }
-                                    .addOnFailureListener { e ->
-                                        Log.e(
-                                            "NotificationAction",
-                                            "Erro ao adiar dose no Firestore",
-                                            e
-                                        )
-                                    }
-
+                                // 2. Enfileira a atualização no Firestore (o documento é o mesmo: o uid não muda com o horário)
+                                Outbox.enqueue(context, Outbox.set(FirestoreDocs.dosePath(userId, updatedDose), FirestoreDocs.dose(updatedDose)))
+                                Log.d("NotificationAction", "Adiamento da dose ID $doseId na fila do Firestore.")
 
                                 // Re-agenda o alarme para o novo horário
-                                AlarmScheduler.schedule(context, updatedDose)
+                                AlarmScheduler.onDosesChanged(context, dao, listOf(updatedDose))
                             } else {
                                 Log.d("NotificationAction", "Limite de adiamentos atingido para a dose $doseId. nenhuma ação tomada.")
                             }
@@ -124,8 +78,8 @@ class NotificationActionReceiver : BroadcastReceiver() {
                     }
                 }
 
-                // Fecha a notificação após a ação
-                NotificationManagerCompat.from(context).cancel(notificationId)
+                // Fecha a notificação após a ação (e o resumo do grupo, se era a última dose dele)
+                AlarmReceiver.cancelDoseNotification(context, notificationId, summaryId)
 
             } finally {
                 pendingResult.finish()
@@ -0,0 +1,117 @@
+package com.example.medicamentos.data
+
+import android.content.Context
+import android.util.Log
+import androidx.work.BackoffPolicy
+import androidx.work.Constraints
+import androidx.work.ExistingWorkPolicy
+import androidx.work.NetworkType
+import androidx.work.OneTimeWorkRequest
+import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.WorkManager
+import java.util.concurrent.TimeUnit
+
+/**
+ * Fila durável de escritas para o Firestore.
+ *
+ * Toda alteração feita no app é gravada primeiro na tabela `firestore_outbox` e só depois enviada
+ * pelo [OutboxWorker], que roda quando há conexão, junta as operações pendentes de um mesmo documento
+ * e manda tudo em lotes de até [BATCH_LIMIT] escritas. Se o envio falhar, nada se perde: o worker
+ * tenta de novo com espera exponencial.
+ */
+object Outbox {
+
+    // Limite de operações por WriteBatch do Firestore
+    const val BATCH_LIMIT = 500
+
+    private const val WORK_NAME = "firestoreOutboxFlush"
+    private const val BACKOFF_SECONDS = 30L
+
+    fun set(documentPath: String, data: Map<String, Any?>) =
+        OutboxEntry(documentPath = documentPath, operation = OutboxOperation.SET, payload = OutboxPayload.encode(data))
+
+    fun merge(documentPath: String, data: Map<String, Any?>) =
+        OutboxEntry(documentPath = documentPath, operation = OutboxOperation.MERGE, payload = OutboxPayload.encode(data))
+
+    fun delete(documentPath: String) =
+        OutboxEntry(documentPath = documentPath, operation = OutboxOperation.DELETE)
+
+    /**
+     * Grava as operações no outbox (na ordem recebida) e agenda o envio.
+     */
+    suspend fun enqueue(context: Context, entries: List<OutboxEntry>) {
+        if (entries.isEmpty()) return
+        val dao = (context.applicationContext as MedicamentosApplication).database.outboxDao()
+        dao.insert(entries)
+        Log.d("Outbox", "${entries.size} escritas na fila")
+        scheduleFlush(context)
+    }
+
+    suspend fun enqueue(context: Context, vararg entries: OutboxEntry) = enqueue(context, entries.toList())
+
+    fun scheduleFlush(context: Context) {
+        val constraints = Constraints.Builder()
+            .setRequiredNetworkType(NetworkType.CONNECTED)
+            .build()
+
+        val request = OneTimeWorkRequestBuilder<OutboxWorker>()
+            .setConstraints(constraints)
+            .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+            .build()
+
+        // APPEND_OR_REPLACE: se um envio já estiver rodando, outro roda logo depois dele
+        // e pega o que entrou na fila nesse meio-tempo
+        WorkManager.getInstance(context.applicationContext).enqueueUniqueWork(
+            WORK_NAME,
+            ExistingWorkPolicy.APPEND_OR_REPLACE,
+            request
+        )
+    }
+
+    /**
+     * Enfileira [request] na mesma cadeia única do envio, logo depois de um envio do outbox: o
+     * trabalho só roda quando tudo o que estava na fila já chegou ao Firestore, e nenhum envio
+     * roda ao mesmo tempo que ele (ex.: apagar documentos sem que um SET atrasado os recrie).
+     */
+    fun enqueueAfterFlush(context: Context, request: OneTimeWorkRequest) {
+        scheduleFlush(context)
+        WorkManager.getInstance(context.applicationContext).enqueueUniqueWork(
+            WORK_NAME,
+            ExistingWorkPolicy.APPEND_OR_REPLACE,
+            request
+        )
+    }
+
+    /**
+     * Junta as operações pendentes por documento, preservando a ordem em que foram feitas:
+     * um SET ou DELETE substitui o que veio antes; um MERGE soma seus campos aos anteriores.
+     */
+    fun coalesce(entries: List<OutboxEntry>): List<OutboxWrite> {
+        val byPath = LinkedHashMap<String, OutboxWrite>()
+        entries.sortedBy { it.id }.forEach { entry ->
+            val data = entry.payload?.let { OutboxPayload.decode(it) }
+            val previous = byPath[entry.documentPath]
+            byPath[entry.documentPath] = if (previous == null) {
+                OutboxWrite(entry.documentPath, entry.operation, data, listOf(entry.id), entry.attempts)
+            } else {
+                fold(previous, entry.operation, data).copy(
+                    entryIds = previous.entryIds + entry.id,
+                    attempts = maxOf(previous.attempts, entry.attempts)
+                )
+            }
+        }
+        return byPath.values.toList()
+    }
+
+    private fun fold(previous: OutboxWrite, operation: OutboxOperation, data: Map<String, Any?>?): OutboxWrite =
+        when (operation) {
+            OutboxOperation.SET, OutboxOperation.DELETE -> previous.copy(operation = operation, data = data)
+            OutboxOperation.MERGE -> when (previous.operation) {
+                // Campos novos por cima dos anteriores; o tipo da operação anterior é mantido
+                OutboxOperation.SET, OutboxOperation.MERGE ->
+                    previous.copy(data = previous.data.orEmpty() + data.orEmpty())
+                // Merge num documento apagado cria um documento só com esses campos
+                OutboxOperation.DELETE -> previous.copy(operation = OutboxOperation.SET, data = data)
+            }
+        }
+}
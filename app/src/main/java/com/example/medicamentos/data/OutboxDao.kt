@@ -0,0 +1,33 @@
+package com.example.medicamentos.data
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.Query
+
+@Dao
+interface OutboxDao {
+
+    @Insert
+    suspend fun insert(entries: List<OutboxEntry>)
+
+    // Ordem de inserção: é ela que define qual operação vence ao agrupar por documento.
+    // Só as escritas sob [pathPrefix] (ver [FirestoreDocs.userPrefix]): as de outra conta esperam ela voltar
+    @Query(
+        "SELECT * FROM firestore_outbox WHERE failedAt IS NULL " +
+            "AND substr(documentPath, 1, length(:pathPrefix)) = :pathPrefix ORDER BY id ASC LIMIT :limit"
+    )
+    suspend fun getPending(pathPrefix: String, limit: Int): List<OutboxEntry>
+
+    @Query("DELETE FROM firestore_outbox WHERE id IN (:ids)")
+    suspend fun deleteByIds(ids: List<Long>)
+
+    @Query("UPDATE firestore_outbox SET attempts = attempts + 1 WHERE id IN (:ids)")
+    suspend fun incrementAttempts(ids: List<Long>)
+
+    // Escritas descartadas ficam na tabela (com o payload) para diagnóstico, fora da fila
+    @Query("UPDATE firestore_outbox SET failedAt = :failedAt WHERE id IN (:ids)")
+    suspend fun markFailed(ids: List<Long>, failedAt: Long)
+
+    @Query("SELECT COUNT(id) FROM firestore_outbox WHERE failedAt IS NULL")
+    suspend fun countPending(): Int
+}
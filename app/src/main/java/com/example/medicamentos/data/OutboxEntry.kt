@@ -0,0 +1,31 @@
+package com.example.medicamentos.data
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * Escrita pendente para o Firestore, gravada no Room antes de ir para a rede.
+ * O [OutboxWorker] envia as pendências em lote quando houver conexão.
+ */
+@Entity(
+    tableName = "firestore_outbox",
+    indices = [Index(value = ["documentPath"])]
+)
+data class OutboxEntry(
+    @PrimaryKey(autoGenerate = true)
+    val id: Long = 0,
+    val documentPath: String = "",   // Ex: "users/{uid}/doses/{docId}"
+    val operation: OutboxOperation = OutboxOperation.SET,
+    val payload: String? = null,     // Campos em JSON (ver [OutboxPayload]); nulo para DELETE
+    val createdAt: Long = System.currentTimeMillis(),
+    val attempts: Int = 0,
+    // Preenchido quando a escrita é descartada (erro permanente ou tentativas esgotadas): sai da fila
+    val failedAt: Long? = null
+)
+
+enum class OutboxOperation {
+    SET,    // Substitui o documento inteiro
+    MERGE,  // Atualiza só os campos informados (set com merge, cria o documento se não existir)
+    DELETE
+}
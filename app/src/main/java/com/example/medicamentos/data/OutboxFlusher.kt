@@ -0,0 +1,143 @@
+package com.example.medicamentos.data
+
+import com.google.android.gms.tasks.Tasks
+import com.google.firebase.firestore.FirebaseFirestore
+import com.google.firebase.firestore.FirebaseFirestoreException
+import com.google.firebase.firestore.SetOptions
+import com.google.firebase.firestore.ktx.firestore
+import com.google.firebase.ktx.Firebase
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.util.concurrent.ExecutionException
+
+/**
+ * Escrita já agrupada por documento, pronta para ir num lote.
+ * [entryIds] são as linhas do outbox que ela substitui; [attempts] é o maior número de falhas entre elas.
+ */
+data class OutboxWrite(
+    val documentPath: String,
+    val operation: OutboxOperation,
+    val data: Map<String, Any?>?,
+    val entryIds: List<Long>,
+    val attempts: Int = 0
+)
+
+/**
+ * Falha que não passa com o tempo (regras de segurança, documento inválido...): repetir não adianta.
+ */
+class PermanentWriteException(cause: Throwable) : Exception(cause.message, cause)
+
+/**
+ * Destino das escritas do outbox. Em produção é o Firestore; nos testes, um fake em memória.
+ */
+interface RemoteStore {
+    /** Aplica todas as escritas de forma atômica (tudo ou nada). */
+    suspend fun commit(writes: List<OutboxWrite>)
+}
+
+class FirestoreRemoteStore(private val db: FirebaseFirestore = Firebase.firestore) : RemoteStore {
+
+    override suspend fun commit(writes: List<OutboxWrite>) {
+        val batch = db.batch()
+        writes.forEach { write ->
+            val ref = db.document(write.documentPath)
+            when (write.operation) {
+                OutboxOperation.SET -> batch.set(ref, FirestoreDocs.withServerFields(write.documentPath, write.data))
+                OutboxOperation.MERGE -> batch.set(ref, FirestoreDocs.withServerFields(write.documentPath, write.data), SetOptions.merge())
+                OutboxOperation.DELETE -> batch.delete(ref)
+            }
+        }
+        try {
+            // Chamado pelo worker, fora da thread principal
+            withContext(Dispatchers.IO) { Tasks.await(batch.commit()) }
+        } catch (e: ExecutionException) {
+            val cause = e.cause
+            if (cause is FirebaseFirestoreException && cause.code in PERMANENT_ERRORS) {
+                throw PermanentWriteException(cause)
+            }
+            throw e
+        }
+    }
+
+    private companion object {
+        val PERMANENT_ERRORS = setOf(
+            FirebaseFirestoreException.Code.INVALID_ARGUMENT,
+            FirebaseFirestoreException.Code.PERMISSION_DENIED,
+            FirebaseFirestoreException.Code.NOT_FOUND,
+            FirebaseFirestoreException.Code.ALREADY_EXISTS,
+            FirebaseFirestoreException.Code.FAILED_PRECONDITION,
+            FirebaseFirestoreException.Code.OUT_OF_RANGE,
+            FirebaseFirestoreException.Code.UNIMPLEMENTED
+        )
+    }
+}
+
+/**
+ * Esvazia o outbox: lê as pendências em ordem, agrupa por documento e envia em lotes.
+ * Cada lote só sai da tabela depois de confirmado; se um lote falhar, a exceção sobe
+ * e as linhas ficam para a próxima tentativa.
+ *
+ * Um lote falha inteiro por causa de uma única escrita. Com erro permanente ou depois de
+ * [MAX_ATTEMPTS] falhas, o lote é reenviado escrita por escrita e as que falharem são
+ * descartadas ([OutboxDao.markFailed], avisadas em [onFailed]), para não travar o resto da fila.
+ */
+class OutboxFlusher(
+    private val dao: OutboxDao,
+    private val remote: RemoteStore,
+    private val batchLimit: Int = Outbox.BATCH_LIMIT,
+    private val onFailed: (OutboxWrite, Exception) -> Unit = { _, _ -> }
+) {
+
+    /**
+     * Envia as escritas de [userId] e retorna quantas (já agrupadas) foram enviadas.
+     * As de outra conta ficam na fila: as regras do Firestore as recusariam com a sessão atual.
+     */
+    suspend fun flush(userId: String): Int {
+        var sent = 0
+        while (true) {
+            val pending = dao.getPending(FirestoreDocs.userPrefix(userId), READ_LIMIT)
+            if (pending.isEmpty()) return sent
+
+            Outbox.coalesce(pending).chunked(batchLimit).forEach { chunk ->
+                val entryIds = chunk.flatMap { it.entryIds }
+                try {
+                    remote.commit(chunk)
+                } catch (e: Exception) {
+                    entryIds.chunked(SQL_VARIABLE_LIMIT).forEach { dao.incrementAttempts(it) }
+                    if (!isHopeless(e, chunk.maxOf { it.attempts } + 1)) throw e
+                    sent += commitOneByOne(chunk)
+                    return@forEach
+                }
+                entryIds.chunked(SQL_VARIABLE_LIMIT).forEach { dao.deleteByIds(it) }
+                sent += chunk.size
+            }
+        }
+    }
+
+    // As tentativas das escritas já foram contadas pela falha do lote
+    private suspend fun commitOneByOne(writes: List<OutboxWrite>): Int {
+        var sent = 0
+        writes.forEach { write ->
+            try {
+                remote.commit(listOf(write))
+            } catch (e: Exception) {
+                if (!isHopeless(e, write.attempts + 1)) throw e
+                write.entryIds.chunked(SQL_VARIABLE_LIMIT).forEach { dao.markFailed(it, System.currentTimeMillis()) }
+                onFailed(write, e)
+                return@forEach
+            }
+            write.entryIds.chunked(SQL_VARIABLE_LIMIT).forEach { dao.deleteByIds(it) }
+            sent++
+        }
+        return sent
+    }
+
+    private fun isHopeless(e: Exception, attempts: Int) = e is PermanentWriteException || attempts >= MAX_ATTEMPTS
+
+    companion object {
+        private const val READ_LIMIT = 2000
+
+        // Com a espera exponencial do WorkManager, algumas horas de falhas seguidas
+        const val MAX_ATTEMPTS = 10
+    }
+}
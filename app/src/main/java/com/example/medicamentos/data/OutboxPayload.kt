@@ -0,0 +1,40 @@
+package com.example.medicamentos.data
+
+import org.json.JSONObject
+import java.util.Date
+
+/**
+ * Serializa os campos de um documento para guardar no outbox.
+ *
+ * Só aceita os tipos que os documentos do app usam (texto, números, booleanos, nulo e [Date]).
+ * O `updatedAt` não entra aqui: ele é um valor do servidor e é acrescentado no envio (ver [FirestoreRemoteStore]).
+ */
+object OutboxPayload {
+
+    private const val DATE_KEY = "\$date"
+
+    fun encode(data: Map<String, Any?>): String {
+        val json = JSONObject()
+        data.forEach { (key, value) -> json.put(key, encodeValue(value)) }
+        return json.toString()
+    }
+
+    fun decode(payload: String): Map<String, Any?> {
+        val json = JSONObject(payload)
+        return json.keys().asSequence().associateWith { decodeValue(json.get(it)) }
+    }
+
+    private fun encodeValue(value: Any?): Any = when (value) {
+        null -> JSONObject.NULL
+        is Date -> JSONObject().put(DATE_KEY, value.time)
+        is String, is Boolean, is Int, is Long, is Double -> value
+        is Float -> value.toDouble()
+        else -> throw IllegalArgumentException("Tipo não suportado no outbox: ${value::class.java.simpleName}")
+    }
+
+    private fun decodeValue(value: Any): Any? = when {
+        value == JSONObject.NULL -> null
+        value is JSONObject && value.has(DATE_KEY) -> Date(value.getLong(DATE_KEY))
+        else -> value
+    }
+}
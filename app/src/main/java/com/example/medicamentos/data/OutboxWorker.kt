@@ -0,0 +1,40 @@
+package com.example.medicamentos.data
+
+import android.content.Context
+import android.util.Log
+import androidx.work.CoroutineWorker
+import androidx.work.WorkerParameters
+import com.google.firebase.auth.ktx.auth
+import com.google.firebase.ktx.Firebase
+
+/**
+ * Envia ao Firestore as escritas pendentes do outbox (ver [Outbox]).
+ * Só é agendado com rede disponível; em caso de falha, o WorkManager repete com espera exponencial.
+ */
+class OutboxWorker(
+    appContext: Context,
+    workerParams: WorkerParameters
+) : CoroutineWorker(appContext, workerParams) {
+
+    companion object {
+        // Escrita descartada pelo [OutboxFlusher]: fica na tabela, fora da fila
+        fun logFailed(write: OutboxWrite, e: Exception) {
+            Log.e("OutboxWorker", "Escrita descartada após ${write.attempts + 1} tentativas: ${write.operation} ${write.documentPath}", e)
+        }
+    }
+
+    override suspend fun doWork(): Result {
+        // Sem sessão nada pode ser enviado; a fila é retomada no próximo login (ver HomeActivity)
+        val userId = Firebase.auth.currentUser?.uid ?: return Result.success()
+        val dao = (applicationContext as MedicamentosApplication).database.outboxDao()
+        return try {
+            val sent = OutboxFlusher(dao, FirestoreRemoteStore(), onFailed = ::logFailed).flush(userId)
+            Log.d("OutboxWorker", "$sent escritas enviadas ao Firestore.")
+            Result.success()
+        } catch (e: Exception) {
+            Log.e("OutboxWorker", "Falha ao enviar o outbox (tentativa ${runAttemptCount + 1}).", e)
+            Result.retry()
+        }
+    }
+}
+
@@ -0,0 +1,120 @@
+package com.example.medicamentos.data
+
+import android.content.Context
+import android.util.Log
+import androidx.annotation.MainThread
+import androidx.lifecycle.DefaultLifecycleObserver
+import androidx.lifecycle.LifecycleOwner
+import com.google.firebase.auth.ktx.auth
+import com.google.firebase.firestore.DocumentChange
+import com.google.firebase.firestore.ListenerRegistration
+import com.google.firebase.firestore.ktx.firestore
+import com.google.firebase.ktx.Firebase
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.launch
+import java.time.LocalDate
+
+/**
+ * Listener em tempo real das doses do usuário, para refletir confirmações feitas em outro aparelho.
+ *
+ * Um só listener por processo, ativo enquanto alguma tela ligada por [bind] estiver visível
+ * (entre onStart e onStop). Escuta apenas a janela de datas que existe no Room (de ontem até o fim
+ * do [DoseHorizon]), não sobrescreve doses com escrita deste aparelho ainda no outbox e aplica cada
+ * snapshot inteiro em uma transação, na ordem em que chegaram.
+ */
+object RealtimeDoseSync {
+
+    private const val TAG = "RealtimeSync"
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    // Estado acessado só na thread principal (callbacks do ciclo de vida)
+    private var startedOwners = 0
+    private var registration: ListenerRegistration? = null
+    private var batches: Channel<List<DocumentChange>>? = null
+
+    @MainThread
+    fun bind(context: Context, owner: LifecycleOwner) {
+        val appContext = context.applicationContext
+        owner.lifecycle.addObserver(object : DefaultLifecycleObserver {
+            override fun onStart(owner: LifecycleOwner) = acquire(appContext)
+            override fun onStop(owner: LifecycleOwner) = release()
+        })
+    }
+
+    private fun acquire(context: Context) = traced("realtime:acquire") {
+        startedOwners++
+        if (registration != null) return@traced
+        val userId = Firebase.auth.currentUser?.uid ?: return@traced
+
+        val today = LocalDate.now()
+        val fromDate = today.minusDays(1).toString()
+        val toDate = today.plusDays(DoseHorizon.DAYS.toLong()).toString()
+
+        // Um único consumidor: os lotes são aplicados na ordem dos snapshots
+        val channel = Channel<List<DocumentChange>>(Channel.UNLIMITED)
+        batches = channel
+        scope.launch {
+            for (changes in channel) {
+                try {
+                    apply(context, userId, changes)
+                } catch (e: Exception) {
+                    Log.e(TAG, "Erro ao aplicar mudanças das doses", e)
+                }
+            }
+        }
+
+        registration = Firebase.firestore.collection("users").document(userId).collection("doses")
+            .whereGreaterThanOrEqualTo("date", fromDate)
+            .whereLessThanOrEqualTo("date", toDate)
+            .addSnapshotListener { snapshot, error ->
+                if (error != null) {
+                    Log.e(TAG, "Erro ao escutar mudanças nas doses", error)
+                    return@addSnapshotListener
+                }
+                val changes = snapshot?.documentChanges.orEmpty()
+                if (changes.isNotEmpty()) channel.trySend(changes)
+            }
+        Log.d(TAG, "Listener de doses iniciado ($fromDate a $toDate).")
+    }
+
+    private fun release() {
+        if (startedOwners > 0) startedOwners--
+        if (startedOwners > 0) return
+        registration?.remove()
+        registration = null
+        // O consumidor termina de aplicar o que já chegou e encerra
+        batches?.close()
+        batches = null
+        Log.d(TAG, "Listener de doses removido.")
+    }
+
+    private suspend fun apply(context: Context, userId: String, changes: List<DocumentChange>) {
+        val upserts = ArrayList<MedicationDose>()
+        val removedUids = ArrayList<String>()
+        changes.forEach { change ->
+            val document = change.document
+            // Eco de uma escrita do cache do Firestore que ainda não chegou ao servidor. As escritas que
+            // ainda estão no outbox não aparecem aqui: a transação do DAO as descarta pelo caminho
+            if (document.metadata.hasPendingWrites()) return@forEach
+            val dose = document.toObject(MedicationDose::class.java).withScheduledAt().withUid()
+            when (change.type) {
+                DocumentChange.Type.ADDED, DocumentChange.Type.MODIFIED -> upserts += dose
+                // Documento com ID antigo removido pela migração para o uid: a dose continua no documento novo
+                DocumentChange.Type.REMOVED -> if (document.id == dose.uid) removedUids += dose.uid
+            }
+        }
+        if (upserts.isEmpty() && removedUids.isEmpty()) return
+
+        val dao = (context.applicationContext as MedicamentosApplication).database.treatmentDao()
+        val result = dao.applyRealtimeDoseChanges(userId, upserts, removedUids)
+        if (result.written.isEmpty() && result.removed.isEmpty()) return
+
+        result.removed.forEach { AlarmScheduler.cancel(context, it) }
+        AlarmScheduler.onDosesChanged(context, dao, result.written)
+        Log.d(TAG, "Tempo real: ${result.written.size} doses gravadas, ${result.removed.size} removidas.")
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.medicamentos.data
+
+import android.content.Context
+import android.os.SystemClock
+import android.util.Log
+import com.google.android.gms.tasks.Tasks
+import com.google.firebase.Timestamp
+import com.google.firebase.auth.ktx.auth
+import com.google.firebase.firestore.CollectionReference
+import com.google.firebase.firestore.DocumentSnapshot
+import com.google.firebase.firestore.Query
+import com.google.firebase.firestore.QuerySnapshot
+import com.google.firebase.firestore.ktx.firestore
+import com.google.firebase.ktx.Firebase
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+
+/**
+ * Duração (ms) de cada etapa da última sincronização e quanto veio da nuvem.
+ */
+data class SyncMetrics(
+    val fetchMillis: Long,
+    val mergeMillis: Long,
+    val alarmsMillis: Long,
+    val generateMillis: Long,
+    val totalMillis: Long,
+    val treatments: Int,
+    val doses: Int
+)
+
+/**
+ * Sincronização incremental com o Firestore, uma de cada vez por processo.
+ *
+ * Quem pede uma sincronização enquanto outra está em andamento aguarda o resultado dela em vez
+ * de disparar a segunda (o [Mutex] protege a escolha). A execução roda num escopo do processo,
+ * então recriar a tela não cancela um merge pela metade. As etapas seguem em ordem, cada uma
+ * esperando a anterior: busca (tratamentos e doses em paralelo), merge no Room, alarmes e,
+ * por fim, geração das doses dos tratamentos novos.
+ */
+object SyncCoordinator {
+
+    private const val TAG = "SyncDebug"
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val mutex = Mutex()
+    private var inFlight: Deferred<SyncMetrics?>? = null
+
+    private val _lastMetrics = MutableStateFlow<SyncMetrics?>(null)
+    val lastMetrics: StateFlow<SyncMetrics?> = _lastMetrics.asStateFlow()
+
+    /**
+     * Sincroniza (ou aguarda a sincronização em andamento). Retorna as métricas, ou nulo sem
+     * usuário logado ou em caso de erro; com erro os cursores não avançam e a próxima tenta de novo.
+     */
+    suspend fun sync(context: Context): SyncMetrics? {
+        val appContext = context.applicationContext
+        val job = mutex.withLock {
+            inFlight?.takeIf { it.isActive } ?: scope.async { tracedAsync("sync") { runSync(appContext) } }.also { inFlight = it }
+        }
+        return job.await()
+    }
+
+    private suspend fun runSync(context: Context): SyncMetrics? {
+        val userId = Firebase.auth.currentUser?.uid ?: return null
+        val dao = (context as MedicamentosApplication).database.treatmentDao()
+        val syncCursors = SyncCursorStore(context)
+        val start = SystemClock.elapsedRealtime()
+        Log.d(TAG, "Iniciando sincronização incremental para: $userId")
+
+        return try {
+            val userRef = Firebase.firestore.collection("users").document(userId)
+            val treatmentsCursor = syncCursors.get(userId, "treatments")
+            val dosesCursor = syncCursors.get(userId, "doses")
+
+            // 1. Busca: as duas consultas em paralelo
+            val (fetchMillis, snapshots) = timed("sync:fetch") {
+                coroutineScope {
+                    val treatments = async { fetch(changedDocumentsQuery(userRef.collection("treatments"), treatmentsCursor)) }
+                    val doses = async { fetch(changedDocumentsQuery(userRef.collection("doses"), dosesCursor)) }
+                    treatments.await() to doses.await()
+                }
+            }
+            val (treatmentDocs, doseDocs) = snapshots
+            val cloudTreatments = treatmentDocs.toObjects(Treatment::class.java)
+            // Documentos antigos não têm scheduledAt: recalcula a partir de date/time
+            val cloudDoses = doseDocs.toObjects(MedicationDose::class.java).map { it.withScheduledAt() }
+            Log.d(TAG, "${cloudTreatments.size} tratamentos e ${cloudDoses.size} doses alterados desde o último cursor")
+
+            // 2. Merge em uma única transação; os cursores só avançam depois dele
+            val (mergeMillis, merged) = timed("sync:merge") {
+                dao.mergeRemoteChanges(userId, cloudTreatments, cloudDoses).also {
+                    latestUpdate(treatmentDocs.documents, treatmentsCursor)?.let { syncCursors.set(userId, "treatments", it) }
+                    latestUpdate(doseDocs.documents, dosesCursor)?.let { syncCursors.set(userId, "doses", it) }
+                }
+            }
+
+            // 3. Alarmes das doses que o merge gravou, já com o ID local (o dos documentos é de outro aparelho)
+            val (alarmsMillis, _) = timed("sync:alarms") {
+                if (merged.writtenDoses.isNotEmpty()) AlarmScheduler.onDosesChanged(context, dao, merged.writtenDoses)
+            }
+            val newTreatments = merged.newTreatments
+
+            // 4. Doses APENAS para tratamentos realmente novos, já com o merge concluído
+            val (generateMillis, _) = timed("sync:generate") {
+                if (newTreatments.isNotEmpty()) {
+                    Log.d(TAG, "${newTreatments.size} tratamentos novos")
+                    DoseHorizon.extend(context, dao, newTreatments, userId)
+                }
+            }
+
+            SyncMetrics(
+                fetchMillis = fetchMillis,
+                mergeMillis = mergeMillis,
+                alarmsMillis = alarmsMillis,
+                generateMillis = generateMillis,
+                totalMillis = SystemClock.elapsedRealtime() - start,
+                treatments = cloudTreatments.size,
+                doses = cloudDoses.size
+            ).also {
+                _lastMetrics.value = it
+                Log.d(TAG, "Sincronização incremental completa: $it")
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Erro na sincronização", e)
+            null
+        }
+    }
+
+    private suspend fun fetch(query: Query): QuerySnapshot =
+        withContext(Dispatchers.IO) { Tasks.await(query.get()) }
+
+    // Duração da etapa em ms junto do resultado, numa seção assíncrona: a etapa pode trocar de thread
+    private suspend fun <T> timed(section: String, block: suspend () -> T): Pair<Long, T> {
+        val stageStart = SystemClock.elapsedRealtime()
+        val result = tracedAsync(section) { block() }
+        return (SystemClock.elapsedRealtime() - stageStart) to result
+    }
+
+    private fun changedDocumentsQuery(collection: CollectionReference, cursor: Timestamp?): Query =
+        if (cursor == null) {
+            collection
+        } else {
+            collection.whereGreaterThan(FirestoreDocs.FIELD_UPDATED_AT, cursor)
+                .orderBy(FirestoreDocs.FIELD_UPDATED_AT)
+        }
+
+    // Maior updatedAt recebido. Sem nenhum, o cursor continua nulo e a próxima busca é completa:
+    // um cursor inventado esconderia para sempre os documentos antigos sem o campo (o
+    // DoseRekeyWorker os preenche)
+    private fun latestUpdate(documents: List<DocumentSnapshot>, previous: Timestamp?): Timestamp? =
+        documents.mapNotNull { it.getTimestamp(FirestoreDocs.FIELD_UPDATED_AT) }.maxOrNull() ?: previous
+}
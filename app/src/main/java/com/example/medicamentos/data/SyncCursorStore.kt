@@ -0,0 +1,34 @@
+package com.example.medicamentos.data
+
+import android.content.Context
+import com.google.firebase.Timestamp
+
+/**
+ * Guarda, por usuário e por coleção, o maior `updatedAt` já sincronizado.
+ * Sem cursor, a próxima sincronização baixa a coleção inteira (uma única vez).
+ */
+class SyncCursorStore(context: Context) {
+
+    private val prefs = context.applicationContext.getSharedPreferences("SyncPreferences", Context.MODE_PRIVATE)
+
+    fun get(userId: String, collection: String): Timestamp? {
+        val key = key(userId, collection)
+        if (!prefs.contains("${key}_seconds")) return null
+        return Timestamp(prefs.getLong("${key}_seconds", 0), prefs.getInt("${key}_nanos", 0))
+    }
+
+    fun set(userId: String, collection: String, cursor: Timestamp) {
+        val key = key(userId, collection)
+        prefs.edit()
+            .putLong("${key}_seconds", cursor.seconds)
+            .putInt("${key}_nanos", cursor.nanoseconds)
+            .apply()
+    }
+
+    // Chamado junto com a limpeza do banco local: sem dados locais, os cursores não valem mais
+    fun clearAll() {
+        prefs.edit().clear().apply()
+    }
+
+    private fun key(userId: String, collection: String) = "cursor_${userId}_$collection"
+}
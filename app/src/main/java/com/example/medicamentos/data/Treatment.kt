@@ -4,8 +4,10 @@ import androidx.room.Entity
 import androidx.room.PrimaryKey
 import androidx.room.TypeConverters
 import com.example.medicamentos.data.Converters
+import com.google.firebase.firestore.IgnoreExtraProperties
 import java.util.Date
 
+@IgnoreExtraProperties
 @Entity(tableName = "treatments")
 @TypeConverters(Converters::class)
 data class Treatment(
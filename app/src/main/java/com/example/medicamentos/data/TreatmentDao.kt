@@ -29,6 +29,9 @@ interface TreatmentDao {
     @Insert(onConflict = OnConflictStrategy.Companion.IGNORE)
     suspend fun insertDose(dose: MedicationDose): Long
 
+    @Insert(onConflict = OnConflictStrategy.Companion.IGNORE)
+    suspend fun insertDoses(doses: List<MedicationDose>): List<Long>
+
     @Update
     suspend fun updateDose(dose: MedicationDose)
 
@@ -41,9 +44,34 @@ interface TreatmentDao {
     @Query("SELECT * FROM daily_doses WHERE treatmentId = :treatmentId AND date = :date")
     suspend fun getDosesForTreatmentOnDate(treatmentId: Int, date: String): List<MedicationDose>
 
+    @Query("SELECT * FROM daily_doses WHERE treatmentId = :treatmentId AND date BETWEEN :startDate AND :endDate")
+    suspend fun getDosesForTreatmentBetween(treatmentId: Int, startDate: String, endDate: String): List<MedicationDose>
+
+    @Query("SELECT MAX(date) FROM daily_doses WHERE treatmentId = :treatmentId")
+    suspend fun getLastDoseDate(treatmentId: Int): String?
+
     @Query("SELECT * FROM daily_doses WHERE id = :doseId")
     suspend fun getDoseById(doseId: Int): MedicationDose?
 
+    /**
+     * Compara as doses planejadas com as existentes (uma única consulta por intervalo)
+     * e insere apenas as que faltam, tudo na mesma transação.
+     * Retorna as doses realmente inseridas, já com o ID gerado pelo Room.
+     */
+    @Transaction
+    suspend fun insertMissingDoses(treatmentId: Int, planned: List<MedicationDose>): List<MedicationDose> {
+        if (planned.isEmpty()) return emptyList()
+
+        val existing = getDosesForTreatmentBetween(treatmentId, planned.minOf { it.date }, planned.maxOf { it.date })
+        val missing = DoseGenerator.missingDoses(planned, existing)
+        if (missing.isEmpty()) return emptyList()
+
+        val generatedIds = insertDoses(missing)
+        return missing.zip(generatedIds)
+            .filter { (_, id) -> id != -1L }
+            .map { (dose, id) -> dose.copy(id = id.toInt()) }
+    }
+
     // --- Métodos para Limpar Dados ---
     @Query("DELETE FROM treatments")
     suspend fun clearAllTreatments()
@@ -52,10 +80,14 @@ interface TreatmentDao {
     suspend fun clearAllDoses()
 
 
+    @Query("DELETE FROM adherence_daily")
+    suspend fun clearAdherence()
+
     @Transaction
     suspend fun clearAllData() {
         clearAllDoses()
         clearAllTreatments()
+        clearAdherence()
         Log.d("DAO", "Todos os dados locais foram limpos")
     }
 
@@ -65,12 +97,18 @@ interface TreatmentDao {
     @Query("DELETE FROM daily_doses WHERE treatmentId = :treatmentId")
     suspend fun deleteDosesByTreatmentId(treatmentId: Int)
 
-    // Transação para garantir que ambos sejam deletados com segurança
+    @Query("SELECT * FROM daily_doses WHERE treatmentId = :treatmentId AND status = 'PENDING'")
+    suspend fun getPendingDosesForTreatment(treatmentId: Int): List<MedicationDose>
+
+    // Transação para garantir que ambos sejam deletados com segurança.
+    // Retorna as doses pendentes apagadas, cujos alarmes ainda precisam ser cancelados
     @Transaction
-    suspend fun deleteTreatmentAndDoses(treatmentId: Int) {
+    suspend fun deleteTreatmentAndDoses(treatmentId: Int): List<MedicationDose> {
+        val pendingDoses = getPendingDosesForTreatment(treatmentId)
         deleteDosesByTreatmentId(treatmentId)
         deleteTreatmentById(treatmentId)
         Log.d("DAO", "Tratamento $treatmentId e suas doses foram deletados.")
+        return pendingDoses
     }
 
     @Query("DELETE FROM daily_doses WHERE id = :doseId")
@@ -79,6 +117,254 @@ interface TreatmentDao {
     @Query("SELECT * FROM daily_doses WHERE status IN ('TAKEN', 'MISSED') ORDER BY date DESC, time DESC")
     fun getPastDosesHistory(): Flow<List<MedicationDose>>
 
+    // --- Histórico paginado por chave (date, time, id), do mais recente para o mais antigo (ver [DoseHistoryPagingSource]) ---
+    @Query("SELECT * FROM daily_doses WHERE status IN ('TAKEN', 'MISSED') ORDER BY date DESC, time DESC, id DESC LIMIT :limit")
+    suspend fun getHistoryFirstPage(limit: Int): List<MedicationDose>
+
+    // Doses que vêm depois da chave na lista (mais antigas)
+    @Query(
+        "SELECT * FROM daily_doses WHERE status IN ('TAKEN', 'MISSED') " +
+            "AND (date < :date OR (date = :date AND time < :time) OR (date = :date AND time = :time AND id < :id)) " +
+            "ORDER BY date DESC, time DESC, id DESC LIMIT :limit"
+    )
+    suspend fun getHistoryAfter(date: String, time: String, id: Int, limit: Int): List<MedicationDose>
+
+    // Doses que vêm antes da chave na lista (mais recentes), da mais próxima para a mais distante
+    @Query(
+        "SELECT * FROM daily_doses WHERE status IN ('TAKEN', 'MISSED') " +
+            "AND (date > :date OR (date = :date AND time > :time) OR (date = :date AND time = :time AND id > :id)) " +
+            "ORDER BY date ASC, time ASC, id ASC LIMIT :limit"
+    )
+    suspend fun getHistoryBefore(date: String, time: String, id: Int, limit: Int): List<MedicationDose>
+
+    // Posição da chave no histórico: os dias mais recentes vêm somados da tabela agregada e só o
+    // próprio dia da chave é contado em daily_doses, então o custo não cresce com o histórico
+    @Query(
+        "SELECT (SELECT COALESCE(SUM(takenCount + missedCount), 0) FROM adherence_daily WHERE date > :date) + " +
+            "(SELECT COUNT(id) FROM daily_doses WHERE status IN ('TAKEN', 'MISSED') AND date = :date " +
+            "AND (time > :time OR (time = :time AND id > :id)))"
+    )
+    suspend fun countHistoryBefore(date: String, time: String, id: Int): Int
+
+    // Tamanho do histórico pela tabela agregada: custo proporcional ao número de dias, não de doses
+    @Query("SELECT COALESCE(SUM(takenCount + missedCount), 0) FROM adherence_daily")
+    suspend fun countHistory(): Int
+
+    // Totais de adesão somados da tabela agregada (mantida por triggers), sem ler o histórico de doses
+    @Query("SELECT COALESCE(SUM(takenCount), 0) AS takenCount, COALESCE(SUM(missedCount), 0) AS missedCount FROM adherence_daily")
+    fun getAdherenceTotals(): Flow<AdherenceTotals>
+
     @Query("SELECT * FROM daily_doses WHERE date = :date AND status = 'PENDING'")
     suspend fun getPendingDosesForDate(date: String): List<MedicationDose>
-}
\ No newline at end of file
+
+    @Query("SELECT * FROM daily_doses WHERE treatmentId = :treatmentId AND date = :date AND time = :time AND medicationName = :medicationName LIMIT 1")
+    suspend fun findDose(treatmentId: Int, date: String, time: String, medicationName: String): MedicationDose?
+
+    @Query("SELECT * FROM daily_doses WHERE uid = :uid LIMIT 1")
+    suspend fun findDoseByUid(uid: String): MedicationDose?
+
+    /**
+     * Aplica em uma única transação os documentos que mudaram na nuvem.
+     * As doses são casadas pelo uid e, para documentos antigos, pela chave natural (tratamento, data, horário e nome).
+     * Documentos com escrita local ainda no outbox ficam como estão (ver [pendingWritePaths]).
+     * Retorna os tratamentos que ainda não existiam localmente, para que suas doses sejam geradas, e as
+     * doses gravadas com o ID local (o do documento é o do aparelho que o escreveu).
+     */
+    @Transaction
+    suspend fun mergeRemoteChanges(userId: String, treatments: List<Treatment>, doses: List<MedicationDose>): RemoteMergeResult {
+        val pending = pendingWritePaths(
+            treatments.map { FirestoreDocs.treatmentPath(userId, it.id) } + doses.map { FirestoreDocs.dosePath(userId, it) }
+        )
+        val remoteTreatments = treatments.filter { FirestoreDocs.treatmentPath(userId, it.id) !in pending }
+        val newTreatments = remoteTreatments.filter { getTreatmentById(it.id) == null }
+        remoteTreatments.forEach { insertTreatment(it) }
+
+        val written = doses
+            .filter { FirestoreDocs.dosePath(userId, it) !in pending }
+            .mapNotNull { upsertRemoteDose(it) }
+        Log.d("DAO", "Merge remoto: ${remoteTreatments.size} tratamentos, ${written.size} doses gravadas, ${pending.size} com escrita local pendente")
+        return RemoteMergeResult(newTreatments, written)
+    }
+
+    /**
+     * Casa uma dose vinda da nuvem com a local, pelo uid e, para documentos antigos, pela chave natural
+     * (tratamento, data, horário e nome), e grava só se algo mudou.
+     * Retorna a dose gravada (com o ID local) ou nulo se ela já estava igual.
+     */
+    suspend fun upsertRemoteDose(dose: MedicationDose): MedicationDose? {
+        val remoteDose = dose.withUid()
+        val localDose = findDoseByUid(remoteDose.uid)
+            ?: findDose(remoteDose.treatmentId, remoteDose.date, remoteDose.time, remoteDose.medicationName)
+        return if (localDose == null) {
+            // O ID vem de outro aparelho: deixa o Room gerar um novo
+            val id = insertDose(remoteDose.copy(id = 0))
+            if (id == -1L) null else remoteDose.copy(id = id.toInt())
+        } else if (localDose != remoteDose.copy(id = localDose.id)) {
+            remoteDose.copy(id = localDose.id).also { updateDose(it) }
+        } else {
+            null
+        }
+    }
+
+    @Query("SELECT * FROM daily_doses WHERE uid IN (:uids)")
+    suspend fun getDosesByUid(uids: List<String>): List<MedicationDose>
+
+    @Query("DELETE FROM daily_doses WHERE uid IN (:uids)")
+    suspend fun deleteDosesByUid(uids: List<String>)
+
+    /**
+     * Aplica um lote do listener em tempo real (ver [RealtimeDoseSync]) em uma única transação:
+     * doses criadas ou alteradas em outro aparelho e doses removidas (pelo uid).
+     * Doses com escrita local ainda no outbox ficam como estão (ver [pendingWritePaths]).
+     */
+    @Transaction
+    suspend fun applyRealtimeDoseChanges(
+        userId: String,
+        upserts: List<MedicationDose>,
+        removedUids: List<String>
+    ): RealtimeDoseChanges {
+        val pending = pendingWritePaths(
+            upserts.map { FirestoreDocs.dosePath(userId, it) } + removedUids.map { FirestoreDocs.dosePath(userId, it) }
+        )
+        val written = upserts
+            .filter { FirestoreDocs.dosePath(userId, it) !in pending }
+            .mapNotNull { upsertRemoteDose(it) }
+        val removed = removedUids
+            .filter { FirestoreDocs.dosePath(userId, it) !in pending }
+            .chunked(SQL_VARIABLE_LIMIT)
+            .flatMap { uids -> getDosesByUid(uids).also { if (it.isNotEmpty()) deleteDosesByUid(uids) } }
+        return RealtimeDoseChanges(written, removed)
+    }
+
+    @Query("SELECT DISTINCT documentPath FROM firestore_outbox WHERE failedAt IS NULL AND documentPath IN (:paths)")
+    suspend fun getPathsWithPendingWrites(paths: List<String>): List<String>
+
+    /**
+     * Dos [paths], os que ainda têm escrita deste aparelho na fila do outbox. A versão da nuvem
+     * desses documentos é anterior à local e não pode sobrescrever o Room: as escritas do outbox
+     * não são "pending writes" do Firestore, então hasPendingWrites não as enxerga.
+     * Chamado dentro da transação de quem aplica os dados remotos.
+     */
+    suspend fun pendingWritePaths(paths: List<String>): Set<String> =
+        paths.distinct().chunked(SQL_VARIABLE_LIMIT).flatMapTo(HashSet()) { getPathsWithPendingWrites(it) }
+
+    @Query("SELECT * FROM daily_doses WHERE treatmentId = :treatmentId AND date >= :fromDate")
+    suspend fun getDosesForTreatmentFrom(treatmentId: Int, fromDate: String): List<MedicationDose>
+
+    @Query("DELETE FROM daily_doses WHERE id IN (:ids)")
+    suspend fun deleteDosesByIds(ids: List<Int>)
+
+    @Query(
+        "UPDATE daily_doses SET medicationName = :medicationName, dosage = :dosage " +
+            "WHERE treatmentId = :treatmentId AND date >= :fromDate " +
+            "AND (medicationName != :medicationName OR dosage != :dosage)"
+    )
+    suspend fun renameDosesFrom(treatmentId: Int, fromDate: String, medicationName: String, dosage: String): Int
+
+    /**
+     * Aplica a edição de um tratamento a partir de [fromDate] em uma única transação: compara as doses
+     * existentes com o novo plano ([DoseGenerator.diffSchedule]), remove e insere só o que mudou de horário
+     * e atualiza nome e dosagem das que continuam. Doses anteriores a [fromDate] não são tocadas.
+     */
+    @Transaction
+    suspend fun rescheduleTreatment(treatment: Treatment, fromDate: String, planned: List<MedicationDose>): ScheduleChanges {
+        updateTreatment(treatment)
+
+        val diff = DoseGenerator.diffSchedule(getDosesForTreatmentFrom(treatment.id, fromDate), planned)
+        diff.removed.map { it.id }.chunked(SQL_VARIABLE_LIMIT).forEach { deleteDosesByIds(it) }
+
+        val renamed = diff.kept
+            .filter { it.medicationName != treatment.medicationName || it.dosage != treatment.dosage }
+            .map { it.copy(medicationName = treatment.medicationName, dosage = treatment.dosage) }
+        if (renamed.isNotEmpty()) renameDosesFrom(treatment.id, fromDate, treatment.medicationName, treatment.dosage)
+
+        val added = if (diff.added.isEmpty()) {
+            emptyList()
+        } else {
+            diff.added.zip(insertDoses(diff.added))
+                .filter { (_, id) -> id != -1L }
+                .map { (dose, id) -> dose.copy(id = id.toInt()) }
+        }
+        return ScheduleChanges(added = added, removed = diff.removed, renamed = renamed)
+    }
+
+    // Usa o índice (status, scheduledAt): busca direta da próxima dose pendente
+    @Query("SELECT * FROM daily_doses WHERE status = 'PENDING' AND scheduledAt > :afterMinute ORDER BY scheduledAt ASC LIMIT 1")
+    suspend fun getNextPendingDoseAfter(afterMinute: Long): MedicationDose?
+
+    @Query("SELECT * FROM daily_doses WHERE status = 'PENDING' AND scheduledAt BETWEEN :fromMinute AND :toMinute ORDER BY scheduledAt ASC, id ASC")
+    suspend fun getPendingDosesBetween(fromMinute: Long, toMinute: Long): List<MedicationDose>
+
+    // --- Rearme dos alarmes (ver [AlarmRearm]) ---
+
+    @Query("SELECT * FROM daily_doses WHERE status = 'PENDING' AND date >= :fromDate")
+    suspend fun getPendingDosesFrom(fromDate: String): List<MedicationDose>
+
+    @Query("UPDATE daily_doses SET scheduledAt = :scheduledAt WHERE id = :id")
+    suspend fun updateScheduledAt(id: Int, scheduledAt: Long)
+
+    /**
+     * Recalcula scheduledAt das doses pendentes a partir de [fromDate] (o horário no relógio
+     * continua o mesmo, o instante muda com o fuso). Só grava as que mudaram. Retorna quantas.
+     */
+    @Transaction
+    suspend fun recomputeScheduledAt(fromDate: String, epochMinute: (MedicationDose) -> Long): Int {
+        var changed = 0
+        getPendingDosesFrom(fromDate).forEach { dose ->
+            val scheduledAt = epochMinute(dose)
+            if (scheduledAt > 0 && scheduledAt != dose.scheduledAt) {
+                updateScheduledAt(dose.id, scheduledAt)
+                changed++
+            }
+        }
+        return changed
+    }
+
+    // --- Doses esquecidas (ver [MissedDoseSweeper]) ---
+    // As duas consultas usam o índice (status, scheduledAt); scheduledAt = 0 é dose sem horário calculado
+
+    @Query("SELECT id, uid FROM daily_doses WHERE status = 'PENDING' AND scheduledAt > 0 AND scheduledAt < :cutoffMinute")
+    suspend fun getOverduePendingDoses(cutoffMinute: Long): List<DoseRef>
+
+    @Query("UPDATE daily_doses SET status = 'MISSED' WHERE status = 'PENDING' AND scheduledAt > 0 AND scheduledAt < :cutoffMinute")
+    suspend fun markOverdueAsMissed(cutoffMinute: Long): Int
+
+    /**
+     * Marca como MISSED, num único UPDATE, toda dose pendente agendada antes de [cutoffMinute],
+     * qualquer que seja a data. Retorna as doses afetadas para que só elas sejam enviadas à nuvem.
+     * (UPDATE ... RETURNING só existe a partir do SQLite 3.35 / API 34, por isso a leitura antes,
+     * na mesma transação e com o mesmo filtro.)
+     */
+    @Transaction
+    suspend fun sweepMissedDoses(cutoffMinute: Long): List<DoseRef> {
+        val overdue = getOverduePendingDoses(cutoffMinute)
+        if (overdue.isEmpty()) return emptyList()
+        markOverdueAsMissed(cutoffMinute)
+        return overdue
+    }
+}
+
+// Resultado de [TreatmentDao.mergeRemoteChanges]: tratamentos novos e doses gravadas (com o ID local)
+data class RemoteMergeResult(
+    val newTreatments: List<Treatment>,
+    val writtenDoses: List<MedicationDose>
+)
+
+// Resultado de [TreatmentDao.applyRealtimeDoseChanges]: o que de fato mudou no Room
+data class RealtimeDoseChanges(
+    val written: List<MedicationDose>,
+    val removed: List<MedicationDose>
+)
+
+// Resultado de [TreatmentDao.rescheduleTreatment], com as doses inseridas já com o ID do Room
+data class ScheduleChanges(
+    val added: List<MedicationDose>,
+    val removed: List<MedicationDose>,
+    val renamed: List<MedicationDose>
+)
+
+// Identificação mínima de uma dose (ID local e uid do documento no Firestore)
+data class DoseRef(
+    val id: Int,
+    val uid: String
+)
\ No newline at end of file
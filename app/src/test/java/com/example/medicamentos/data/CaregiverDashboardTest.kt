@@ -0,0 +1,51 @@
+package com.example.medicamentos.data
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+/**
+ * Testes (JVM) do painel do cuidador: agrupamento por paciente do resultado da consulta
+ * collectionGroup e o dono derivado do caminho do documento.
+ */
+class CaregiverDashboardTest {
+
+    private val ana = LinkedPatient("uid-ana", "Ana")
+    private val bruno = LinkedPatient("uid-bruno", "Bruno")
+
+    private fun dose(patientUid: String, medicationName: String, time: String, status: MedicationStatus) =
+        CaregiverDose(patientUid = patientUid, medicationName = medicationName, time = time, date = "2025-10-01", status = status)
+
+    @Test
+    fun summarizeByPatient_groupsDosesAndKeepsPatientsWithoutDoses() {
+        val doses = listOf(
+            dose("uid-ana", "Paracetamol", "20:00", MedicationStatus.PENDING),
+            dose("uid-ana", "Vitamina C", "08:00", MedicationStatus.TAKEN),
+            dose("uid-ana", "Dipirona", "14:00", MedicationStatus.PENDING),
+            dose("uid-ana", "Dipirona", "06:00", MedicationStatus.MISSED),
+            // Paciente que não está mais vinculado: ignorado
+            dose("uid-outro", "Insulina", "07:00", MedicationStatus.PENDING)
+        )
+
+        val summaries = summarizeByPatient(listOf(ana, bruno), doses)
+
+        assertEquals(listOf(ana, bruno), summaries.map { it.patient })
+        val anaSummary = summaries[0]
+        assertEquals(4, anaSummary.total)
+        assertEquals(1, anaSummary.taken)
+        assertEquals(2, anaSummary.pending)
+        assertEquals(1, anaSummary.missed)
+        assertEquals("14:00 - Dipirona", anaSummary.nextDose)
+
+        val brunoSummary = summaries[1]
+        assertEquals(0, brunoSummary.total)
+        assertNull(brunoSummary.nextDose)
+    }
+
+    @Test
+    fun doseOwner_onlyForDoseDocuments() {
+        assertEquals("uid-ana", FirestoreDocs.doseOwner("users/uid-ana/doses/abc"))
+        assertNull(FirestoreDocs.doseOwner("users/uid-ana/treatments/3"))
+        assertNull(FirestoreDocs.doseOwner("users/uid-ana"))
+    }
+}
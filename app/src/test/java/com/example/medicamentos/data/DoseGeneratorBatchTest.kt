@@ -0,0 +1,151 @@
+package com.example.medicamentos.data
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.text.SimpleDateFormat
+import java.util.Calendar
+import java.util.Date
+import java.util.Locale
+
+/**
+ * Testes (JVM) da geração de doses: compara o laço antigo, que fazia uma consulta e um
+ * insert por dose, com o motor em lote (plano em memória + uma consulta por intervalo + um insert).
+ *
+ * O "banco" aqui é uma tabela em memória que conta as idas ao DAO, já que cada ida ao Room
+ * custa bem mais do que o cálculo em si em aparelhos mais fracos. Só contagens são conferidas;
+ * o tempo do cálculo é medido no JMH do :schedule-core (ExpandBenchmark).
+ */
+class DoseGeneratorBatchTest {
+
+    private class FakeDoseTable {
+        val rows = ArrayList<MedicationDose>()
+        var roundTrips = 0
+        var writeTransactions = 0
+
+        fun getDosesForTreatmentOnDate(treatmentId: Int, date: String): List<MedicationDose> {
+            roundTrips++
+            return rows.filter { it.treatmentId == treatmentId && it.date == date }
+        }
+
+        fun getDosesForTreatmentBetween(treatmentId: Int, startDate: String, endDate: String): List<MedicationDose> {
+            roundTrips++
+            return rows.filter { it.treatmentId == treatmentId && it.date in startDate..endDate }
+        }
+
+        fun insertDose(dose: MedicationDose) {
+            roundTrips++
+            writeTransactions++
+            rows.add(dose.copy(id = rows.size + 1))
+        }
+
+        fun insertDoses(doses: List<MedicationDose>) {
+            roundTrips++
+            writeTransactions++
+            doses.forEach { rows.add(it.copy(id = rows.size + 1)) }
+        }
+    }
+
+    private fun treatment(durationInDays: Int) = Treatment(
+        id = 1,
+        medicationName = "Amoxicilina",
+        dosage = "500mg",
+        startDate = Date(),
+        durationInDays = durationInDays,
+        frequencyPerDay = 6,
+        startHour = 6,
+        startMinute = 0,
+        intervalHours = 4
+    )
+
+    // Cópia fiel do laço que existia em TreatmentViewModel.generateAndSaveDoses
+    private fun legacyGenerate(treatment: Treatment, table: FakeDoseTable) {
+        val sdfDate = SimpleDateFormat("yyyy-MM-dd", Locale.getDefault())
+        val sdfTime = SimpleDateFormat("HH:mm", Locale.getDefault())
+        for (day in 0 until treatment.durationInDays) {
+            (0 until treatment.frequencyPerDay).forEach { i ->
+                val doseCalendar = Calendar.getInstance().apply {
+                    time = treatment.startDate
+                    add(Calendar.DAY_OF_YEAR, day)
+                    set(Calendar.HOUR_OF_DAY, treatment.startHour)
+                    set(Calendar.MINUTE, treatment.startMinute)
+                    set(Calendar.SECOND, 0)
+                    add(Calendar.HOUR_OF_DAY, i * treatment.intervalHours)
+                }
+                val doseDate = sdfDate.format(doseCalendar.time)
+                val doseTime = sdfTime.format(doseCalendar.time)
+                val existing = table.getDosesForTreatmentOnDate(treatment.id, doseDate)
+                if (existing.none { it.time == doseTime && it.medicationName == treatment.medicationName }) {
+                    table.insertDose(
+                        MedicationDose(
+                            treatmentId = treatment.id,
+                            medicationName = treatment.medicationName,
+                            dosage = treatment.dosage,
+                            time = doseTime,
+                            date = doseDate
+                        )
+                    )
+                }
+            }
+        }
+    }
+
+    private fun batchedGenerate(treatment: Treatment, table: FakeDoseTable) {
+        val planned = DoseGenerator.planDoses(treatment)
+        val existing = table.getDosesForTreatmentBetween(treatment.id, planned.minOf { it.date }, planned.maxOf { it.date })
+        table.insertDoses(DoseGenerator.missingDoses(planned, existing))
+    }
+
+    @Test
+    fun batchedGeneration_matchesLegacyWithConstantRoundTrips() {
+        for (days in listOf(30, 90, 365)) {
+            val legacyTable = FakeDoseTable()
+            val batchedTable = FakeDoseTable()
+
+            legacyGenerate(treatment(days), legacyTable)
+            batchedGenerate(treatment(days), batchedTable)
+
+            assertEquals(legacyTable.rows.map { it.date to it.time }, batchedTable.rows.map { it.date to it.time })
+            assertEquals(2, batchedTable.roundTrips)
+            assertEquals(1, batchedTable.writeTransactions)
+            assertTrue(legacyTable.roundTrips >= days * 6)
+            assertEquals(legacyTable.rows.size, legacyTable.writeTransactions)
+        }
+    }
+
+    @Test
+    fun batchedGeneration_secondRunInsertsNothing() {
+        val table = FakeDoseTable()
+        batchedGenerate(treatment(30), table)
+        val rows = table.rows.size
+
+        batchedGenerate(treatment(30), table)
+
+        assertEquals(rows, table.rows.size)
+    }
+
+    @Test
+    fun missingDoses_skipsExistingAndOverlappingDoses() {
+        val planned = DoseGenerator.planDoses(
+            treatment(2).copy(frequencyPerDay = 3, intervalHours = 12, startHour = 8)
+        )
+        // 08:00, 20:00 e 08:00 do dia seguinte (que coincide com a primeira dose do dia 2)
+        val missing = DoseGenerator.missingDoses(planned, existing = listOf(planned.first()))
+
+        assertEquals(6, planned.size)
+        assertEquals(4, missing.size)
+    }
+
+    @Test
+    fun missingDoses_recognizesPostponedDoseByUid() {
+        val planned = DoseGenerator.planDoses(
+            treatment(1).copy(frequencyPerDay = 2, intervalHours = 12, startHour = 8)
+        )
+        // A dose das 08:00 foi adiada para 08:15: o horário mudou, o uid não
+        val postponed = planned.first().copy(time = "08:15", postponeCount = 1).withScheduledAt()
+        val missing = DoseGenerator.missingDoses(planned, existing = listOf(postponed))
+
+        assertEquals(listOf(planned[1]), missing)
+        assertEquals(planned.first().uid, DoseGenerator.doseUid(postponed.treatmentId, postponed.date, "08:00"))
+    }
+}
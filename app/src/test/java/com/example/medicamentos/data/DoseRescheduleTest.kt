@@ -0,0 +1,76 @@
+package com.example.medicamentos.data
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Calendar
+
+/**
+ * Testes (JVM) da edição de tratamentos: o novo plano só mexe nas doses cujo horário mudou.
+ */
+class DoseRescheduleTest {
+
+    private val startDate = Calendar.getInstance().apply {
+        set(2025, Calendar.OCTOBER, 1, 0, 0, 0)
+        set(Calendar.MILLISECOND, 0)
+    }.time
+
+    // 3 dias, 2 doses por dia a cada 12h a partir das 08:00
+    private val treatment = Treatment(
+        id = 7,
+        medicationName = "Amoxicilina",
+        dosage = "500mg",
+        startDate = startDate,
+        durationInDays = 3,
+        frequencyPerDay = 2,
+        startHour = 8,
+        startMinute = 0,
+        intervalHours = 12
+    )
+
+    private fun materialize(planned: List<MedicationDose>) = planned.mapIndexed { index, dose -> dose.copy(id = index + 1) }
+
+    @Test
+    fun diffSchedule_dosageChangeKeepsEveryDose() {
+        val existing = materialize(DoseGenerator.planDoses(treatment))
+        val planned = DoseGenerator.planDoses(treatment.copy(dosage = "875mg"))
+
+        val diff = DoseGenerator.diffSchedule(existing, planned)
+
+        assertEquals(existing, diff.kept)
+        assertTrue(diff.added.isEmpty())
+        assertTrue(diff.removed.isEmpty())
+    }
+
+    @Test
+    fun diffSchedule_timeChangeReplacesOnlyPendingDoses() {
+        val existing = materialize(DoseGenerator.planDoses(treatment)).mapIndexed { index, dose ->
+            // A primeira dose já foi tomada e a segunda foi adiada (mesmo uid, outro horário)
+            when (index) {
+                0 -> dose.copy(status = MedicationStatus.TAKEN)
+                1 -> DoseGenerator.postpone(dose)!!
+                else -> dose
+            }
+        }
+        // 08:00/20:00 -> 08:00/14:00: só o segundo horário de cada dia muda
+        val planned = DoseGenerator.planDoses(treatment.copy(intervalHours = 6))
+
+        val diff = DoseGenerator.diffSchedule(existing, planned)
+
+        assertEquals(listOf("08:00", "08:00", "08:00"), diff.kept.map { it.time })
+        assertEquals(MedicationStatus.TAKEN, diff.kept.first().status)
+        assertEquals(listOf("20:15", "20:00", "20:00"), diff.removed.map { it.time })
+        assertEquals(listOf("14:00", "14:00", "14:00"), diff.added.map { it.time })
+    }
+
+    @Test
+    fun diffSchedule_neverRemovesResolvedDoses() {
+        val existing = materialize(DoseGenerator.planDoses(treatment))
+            .map { it.copy(status = MedicationStatus.MISSED) }
+
+        val diff = DoseGenerator.diffSchedule(existing, emptyList())
+
+        assertEquals(existing, diff.kept)
+        assertTrue(diff.removed.isEmpty())
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.medicamentos.data
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import java.nio.ByteBuffer
+
+/**
+ * Testes (JVM) do formato binário do snapshot lido pelo AlarmReceiver sem abrir o Room.
+ */
+class NextDosesSnapshotTest {
+
+    private val fromMinute = 29_000_000L
+    private val toMinute = fromMinute + NextDosesSnapshot.WINDOW_MINUTES
+
+    private val doses = listOf(
+        MedicationDose(id = 1, medicationName = "Amoxicilina", dosage = "500mg", scheduledAt = fromMinute + 10),
+        MedicationDose(id = 2, medicationName = "Dipirona", dosage = "1 comprimido", scheduledAt = fromMinute + 11, postponeCount = 1),
+        MedicationDose(id = 3, medicationName = "Vitamina D ☀", dosage = "", scheduledAt = fromMinute + 600)
+    )
+
+    @Test
+    fun encodeDecode_roundTripKeepsNotificationFields() {
+        val snapshot = NextDosesSnapshot.decode(NextDosesSnapshot.encode(doses, fromMinute, toMinute))!!
+
+        assertEquals(fromMinute, snapshot.fromMinute)
+        assertEquals(toMinute, snapshot.toMinute)
+        assertEquals(doses, snapshot.doses)
+    }
+
+    @Test
+    fun pendingBetween_returnsOnlyTheWindow() {
+        val snapshot = NextDosesSnapshot.decode(NextDosesSnapshot.encode(doses, fromMinute, toMinute))!!
+
+        assertEquals(listOf(1, 2), snapshot.pendingBetween(fromMinute + 10, fromMinute + 11)!!.map { it.id })
+        assertEquals(emptyList<MedicationDose>(), snapshot.pendingBetween(fromMinute + 20, fromMinute + 21))
+        assertEquals(2, snapshot.findById(2)!!.id)
+    }
+
+    @Test
+    fun pendingBetween_outsideTheWindowFallsBackToRoom() {
+        val snapshot = NextDosesSnapshot.decode(NextDosesSnapshot.encode(doses, fromMinute, toMinute))!!
+
+        assertNull(snapshot.pendingBetween(fromMinute - 5, fromMinute - 4))
+        assertNull(snapshot.pendingBetween(toMinute, toMinute + 1))
+    }
+
+    @Test
+    fun decode_rejectsTruncatedOrForeignFiles() {
+        val encoded = NextDosesSnapshot.encode(doses, fromMinute, toMinute)
+        val truncated = encoded.duplicate().apply { limit(limit() - 3) }
+
+        assertNull(NextDosesSnapshot.decode(truncated))
+        assertNull(NextDosesSnapshot.decode(ByteBuffer.wrap(ByteArray(32))))
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.medicamentos.data
+
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+
+/**
+ * Testes (JVM) do outbox contra um Firestore falso em memória: agrupamento por documento,
+ * lotes de no máximo 500 escritas e nenhuma perda quando o envio falha.
+ */
+class OutboxFlusherTest {
+
+    private class FakeOutboxDao : OutboxDao {
+        val rows = ArrayList<OutboxEntry>()
+        private var nextId = 1L
+
+        override suspend fun insert(entries: List<OutboxEntry>) {
+            entries.forEach { rows.add(it.copy(id = nextId++)) }
+        }
+
+        override suspend fun getPending(pathPrefix: String, limit: Int) =
+            rows.filter { it.failedAt == null && it.documentPath.startsWith(pathPrefix) }.sortedBy { it.id }.take(limit)
+
+        override suspend fun deleteByIds(ids: List<Long>) {
+            rows.removeAll { it.id in ids }
+        }
+
+        override suspend fun incrementAttempts(ids: List<Long>) {
+            rows.replaceAll { if (it.id in ids) it.copy(attempts = it.attempts + 1) else it }
+        }
+
+        override suspend fun markFailed(ids: List<Long>, failedAt: Long) {
+            rows.replaceAll { if (it.id in ids) it.copy(failedAt = failedAt) else it }
+        }
+
+        override suspend fun countPending() = rows.count { it.failedAt == null }
+    }
+
+    // Firestore falso: cada commit é atômico, como um WriteBatch
+    private class FakeFirestore : RemoteStore {
+        val documents = HashMap<String, Map<String, Any?>>()
+        val batchSizes = ArrayList<Int>()
+        var failNextCommits = 0
+        // Documentos que as regras de segurança recusam: o lote inteiro falha
+        val rejectedPaths = HashSet<String>()
+        var unavailable = false
+
+        override suspend fun commit(writes: List<OutboxWrite>) {
+            if (failNextCommits > 0 || unavailable) {
+                failNextCommits--
+                throw IllegalStateException("UNAVAILABLE")
+            }
+            if (writes.any { it.documentPath in rejectedPaths }) {
+                throw PermanentWriteException(IllegalArgumentException("PERMISSION_DENIED"))
+            }
+            batchSizes.add(writes.size)
+            writes.forEach { write ->
+                when (write.operation) {
+                    OutboxOperation.SET -> documents[write.documentPath] = write.data.orEmpty()
+                    OutboxOperation.MERGE -> documents[write.documentPath] =
+                        documents[write.documentPath].orEmpty() + write.data.orEmpty()
+                    OutboxOperation.DELETE -> documents.remove(write.documentPath)
+                }
+            }
+        }
+    }
+
+    private val dose = MedicationDose(
+        id = 7,
+        treatmentId = 1,
+        medicationName = "Amoxicilina",
+        dosage = "500mg",
+        time = "08:00",
+        date = "2025-03-10"
+    )
+
+    @Test
+    fun rapidEditsToOneDocumentBecomeOneWrite() = runBlocking {
+        val dao = FakeOutboxDao()
+        val firestore = FakeFirestore()
+        val path = FirestoreDocs.dosePath("user", dose)
+
+        val taken = dose.copy(status = MedicationStatus.TAKEN, takenTimestamp = 1234L)
+        dao.insert(
+            listOf(
+                Outbox.set(path, FirestoreDocs.dose(dose)),
+                Outbox.merge(path, FirestoreDocs.doseStatus(taken)),
+                Outbox.merge(path, mapOf("postponeCount" to 1))
+            )
+        )
+
+        val sent = OutboxFlusher(dao, firestore).flush("user")
+
+        assertEquals(1, sent)
+        assertEquals(listOf(1), firestore.batchSizes)
+        val document = firestore.documents.getValue(path)
+        assertEquals("TAKEN", document["status"])
+        assertEquals(1234, (document["takenTimestamp"] as Number).toInt())
+        assertEquals(1, (document["postponeCount"] as Number).toInt())
+        assertEquals("Amoxicilina", document["medicationName"])
+        assertEquals(0, dao.countPending())
+    }
+
+    @Test
+    fun deleteThenSetKeepsOnlyTheLastState() = runBlocking {
+        val dao = FakeOutboxDao()
+        val firestore = FakeFirestore()
+        val oldPath = FirestoreDocs.dosePath("user", dose)
+        val postponed = dose.copy(time = "08:15", postponeCount = 1)
+        val newPath = FirestoreDocs.dosePath("user", postponed)
+        firestore.documents[oldPath] = FirestoreDocs.dose(dose)
+
+        dao.insert(listOf(Outbox.set(oldPath, FirestoreDocs.dose(dose)), Outbox.delete(oldPath), Outbox.set(newPath, FirestoreDocs.dose(postponed))))
+        OutboxFlusher(dao, firestore).flush("user")
+
+        assertFalse(firestore.documents.containsKey(oldPath))
+        assertEquals("08:15", firestore.documents.getValue(newPath)["time"])
+    }
+
+    @Test
+    fun writesArePackedInBatchesOfAtMost500() = runBlocking {
+        val dao = FakeOutboxDao()
+        val firestore = FakeFirestore()
+
+        val doses = (1..1200).map { dose.copy(id = it, time = "%02d:%02d".format(it / 60 % 24, it % 60)) }
+        dao.insert(doses.map { Outbox.set(FirestoreDocs.dosePath("user", it), FirestoreDocs.dose(it)) })
+
+        val sent = OutboxFlusher(dao, firestore).flush("user")
+
+        assertEquals(1200, sent)
+        assertEquals(listOf(500, 500, 200), firestore.batchSizes)
+        assertEquals(1200, firestore.documents.size)
+    }
+
+    @Test
+    fun failedBatchStaysInTheOutboxForTheNextAttempt() = runBlocking {
+        val dao = FakeOutboxDao()
+        val firestore = FakeFirestore().apply { failNextCommits = 1 }
+        val path = FirestoreDocs.treatmentPath("user", 1)
+        dao.insert(listOf(Outbox.merge(path, mapOf("daysCompleted" to 2))))
+
+        try {
+            OutboxFlusher(dao, firestore).flush("user")
+            fail("O envio deveria ter falhado")
+        } catch (e: IllegalStateException) {
+            // Esperado: o worker devolve Result.retry()
+        }
+        assertEquals(1, dao.countPending())
+        assertEquals(1, dao.rows.single().attempts)
+        assertTrue(firestore.documents.isEmpty())
+
+        OutboxFlusher(dao, firestore).flush("user")
+        assertEquals(0, dao.countPending())
+        assertEquals(2, (firestore.documents.getValue(path)["daysCompleted"] as Number).toInt())
+    }
+
+    @Test
+    fun permanentlyRejectedWriteIsSetAsideAndTheRestIsSent() = runBlocking {
+        val dao = FakeOutboxDao()
+        val firestore = FakeFirestore()
+        val doses = (1..3).map { dose.copy(id = it, time = "0$it:00") }
+        val rejected = FirestoreDocs.dosePath("user", doses[1])
+        firestore.rejectedPaths += rejected
+        dao.insert(doses.map { Outbox.set(FirestoreDocs.dosePath("user", it), FirestoreDocs.dose(it)) })
+        val failed = ArrayList<String>()
+
+        val sent = OutboxFlusher(dao, firestore, onFailed = { write, _ -> failed += write.documentPath }).flush("user")
+
+        assertEquals(2, sent)
+        assertEquals(listOf(rejected), failed)
+        assertEquals(2, firestore.documents.size)
+        assertFalse(firestore.documents.containsKey(rejected))
+        assertEquals(0, dao.countPending())
+        assertEquals(rejected, dao.rows.single().documentPath)
+    }
+
+    @Test
+    fun writeIsSetAsideOnlyAfterMaxAttempts() = runBlocking {
+        val dao = FakeOutboxDao()
+        val firestore = FakeFirestore().apply { unavailable = true }
+        dao.insert(listOf(Outbox.merge(FirestoreDocs.treatmentPath("user", 1), mapOf("daysCompleted" to 2))))
+
+        repeat(OutboxFlusher.MAX_ATTEMPTS - 1) {
+            try {
+                OutboxFlusher(dao, firestore).flush("user")
+                fail("O envio deveria ter falhado")
+            } catch (e: IllegalStateException) {
+                // Esperado: ainda há tentativas
+            }
+        }
+        assertEquals(1, dao.countPending())
+
+        assertEquals(0, OutboxFlusher(dao, firestore).flush("user"))
+        assertEquals(0, dao.countPending())
+        assertEquals(OutboxFlusher.MAX_ATTEMPTS, dao.rows.single().attempts)
+    }
+
+    @Test
+    fun writesOfAnotherAccountStayQueued() = runBlocking {
+        val dao = FakeOutboxDao()
+        val firestore = FakeFirestore()
+        // Dose confirmada sem rede antes do logout de "user"
+        val loggedOutPath = FirestoreDocs.dosePath("user", dose)
+        val currentPath = FirestoreDocs.dosePath("other", dose)
+        dao.insert(listOf(Outbox.set(loggedOutPath, FirestoreDocs.dose(dose)), Outbox.set(currentPath, FirestoreDocs.dose(dose))))
+
+        assertEquals(1, OutboxFlusher(dao, firestore).flush("other"))
+        assertEquals(setOf(currentPath), firestore.documents.keys)
+        assertEquals(listOf(loggedOutPath), dao.rows.map { it.documentPath })
+
+        // "user" entra de novo: a escrita dele finalmente sai
+        assertEquals(1, OutboxFlusher(dao, firestore).flush("user"))
+        assertEquals(0, dao.countPending())
+    }
+}
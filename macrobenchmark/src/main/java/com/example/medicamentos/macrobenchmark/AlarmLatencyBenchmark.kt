@@ -0,0 +1,53 @@
+package com.example.medicamentos.macrobenchmark
+
+import androidx.benchmark.macro.ExperimentalMetricApi
+import androidx.benchmark.macro.TraceSectionMetric
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule
+import androidx.test.filters.LargeTest
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+/**
+ * Latência do alarme até a notificação: dispara o AlarmReceiver (modo NEXT_DUE) com o processo
+ * morto e vivo e mede a seção de trace do caminho rápido (snapshot das próximas doses).
+ *
+ * Para que haja notificação, passe o minuto de uma dose pendente em `-e alarmMinute <minuto>`;
+ * sem ele é usado o minuto atual. A latência vista pelo app fica em `lastAlarmLatency` (AppPreferences).
+ */
+@LargeTest
+@RunWith(JUnit4::class)
+@OptIn(ExperimentalMetricApi::class)
+class AlarmLatencyBenchmark {
+
+    @get:Rule
+    val rule = MacrobenchmarkRule()
+
+    @Test
+    fun alarmCold() = alarm(killProcess = true)
+
+    @Test
+    fun alarmWarm() = alarm(killProcess = false)
+
+    private fun alarm(killProcess: Boolean) = rule.measureRepeated(
+        packageName = PACKAGE_NAME,
+        metrics = listOf(TraceSectionMetric(TRACE_ALARM_NOTIFY)),
+        iterations = ITERATIONS,
+        setupBlock = { if (killProcess) killProcess() }
+    ) {
+        sendAlarm(alarmMinute)
+    }
+
+    private val alarmMinute: Long
+        get() = InstrumentationRegistry.getArguments().getString("alarmMinute")?.toLongOrNull()
+            ?: (System.currentTimeMillis() / 60_000L)
+
+    companion object {
+        private const val ITERATIONS = 10
+
+        // Mesmo valor de AlarmReceiver.TRACE_ALARM_NOTIFY
+        private const val TRACE_ALARM_NOTIFY = "AlarmReceiver.notify"
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.medicamentos.macrobenchmark
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.LargeTest
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Gera o Baseline Profile consumido pelo :app.
+ *
+ * Rodar com `./gradlew :app:generateBaselineProfile` (emulador API 33+ ou aparelho com root);
+ * o resultado substitui app/src/main/generated/baselineProfiles/baseline-prof.txt.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4::class)
+class BaselineProfileGenerator {
+
+    @get:Rule
+    val rule = BaselineProfileRule()
+
+    @Test
+    fun generate() = rule.collect(
+        packageName = PACKAGE_NAME,
+        includeInStartupProfile = true
+    ) {
+        pressHome()
+        startHome()
+        scrollHomeList()
+
+        startReport()
+        scrollReportHistory()
+
+        startCaregiverHome()
+
+        // Caminho do alarme com o processo frio (snapshot das próximas doses)
+        killProcess()
+        sendAlarm()
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.medicamentos.macrobenchmark
+
+import android.content.Intent
+import androidx.benchmark.macro.MacrobenchmarkScope
+import androidx.test.platform.app.InstrumentationRegistry
+import androidx.test.uiautomator.By
+import androidx.test.uiautomator.Direction
+import androidx.test.uiautomator.Until
+
+/**
+ * Jornadas compartilhadas pelos benchmarks e pelo gerador de Baseline Profile.
+ *
+ * A tela inicial só aparece com um usuário já logado no aparelho (o login do Google não é
+ * automatizável); o cuidador usa o uid passado em `-e patientUid <uid>` nos argumentos.
+ */
+const val PACKAGE_NAME = "com.example.medicamentos"
+
+private const val UI_TIMEOUT_MS = 10_000L
+
+// Mesmo valor de AlarmScheduler.ACTION_NEXT_DUE_ALARM
+private const val ACTION_NEXT_DUE_ALARM = "com.example.medicamentos.NEXT_DUE_ALARM"
+
+// Mesmos valores de TAG_* em SharedUI.kt (o app expõe as tags como resource-id)
+private const val HOME_DOSE_LIST = "home_dose_list"
+private const val REPORT_HISTORY_LIST = "report_history_list"
+private const val CAREGIVER_DOSE_LIST = "caregiver_dose_list"
+
+private val patientUid: String
+    get() = InstrumentationRegistry.getArguments().getString("patientUid") ?: "benchmark-patient"
+
+/** MainActivity → HomeActivity, esperando a barra de navegação da tela inicial. */
+fun MacrobenchmarkScope.startHome() {
+    startActivityAndWait()
+    check(device.wait(Until.hasObject(By.text("Hoje")), UI_TIMEOUT_MS)) {
+        "A tela inicial não apareceu: faça login no app antes de rodar os benchmarks"
+    }
+}
+
+/** Rola a lista de doses do dia, se houver doses. */
+fun MacrobenchmarkScope.scrollHomeList() {
+    val list = device.wait(Until.findObject(By.res(HOME_DOSE_LIST)), UI_TIMEOUT_MS) ?: return
+    list.setGestureMargin(device.displayWidth / 5)
+    list.fling(Direction.DOWN)
+    device.waitForIdle()
+    list.fling(Direction.UP)
+    device.waitForIdle()
+}
+
+fun MacrobenchmarkScope.startReport() {
+    startActivityAndWait(Intent().setClassName(PACKAGE_NAME, "$PACKAGE_NAME.ReportActivity"))
+    device.wait(Until.hasObject(By.text("Histórico de Doses")), UI_TIMEOUT_MS)
+}
+
+/** Rola o histórico paginado para baixo (carregando páginas novas) e volta ao topo. */
+fun MacrobenchmarkScope.scrollReportHistory() {
+    val list = device.wait(Until.findObject(By.res(REPORT_HISTORY_LIST)), UI_TIMEOUT_MS) ?: return
+    list.setGestureMargin(device.displayWidth / 5)
+    repeat(3) {
+        list.fling(Direction.DOWN)
+        device.waitForIdle()
+    }
+    list.fling(Direction.UP)
+    device.waitForIdle()
+}
+
+fun MacrobenchmarkScope.startCaregiverHome() {
+    startActivityAndWait(
+        Intent().setClassName(PACKAGE_NAME, "$PACKAGE_NAME.CaregiverHomeActivity")
+            .putExtra("PATIENT_UID", patientUid)
+            .putExtra("PATIENT_NAME", "Paciente")
+    )
+    device.wait(Until.hasObject(By.res(CAREGIVER_DOSE_LIST)), UI_TIMEOUT_MS)
+}
+
+/**
+ * Dispara o AlarmReceiver (modo NEXT_DUE) para [minute]. O `am broadcast` só retorna quando o
+ * receiver termina, inclusive o trabalho do goAsync.
+ */
+fun MacrobenchmarkScope.sendAlarm(minute: Long = System.currentTimeMillis() / 60_000L) {
+    device.executeShellCommand(
+        "am broadcast -a $ACTION_NEXT_DUE_ALARM -n $PACKAGE_NAME/.data.AlarmReceiver --el SCHEDULED_AT $minute"
+    )
+}
@@ -0,0 +1,62 @@
+package com.example.medicamentos.macrobenchmark
+
+import androidx.benchmark.macro.BaselineProfileMode
+import androidx.benchmark.macro.CompilationMode
+import androidx.benchmark.macro.FrameTimingMetric
+import androidx.benchmark.macro.StartupMode
+import androidx.benchmark.macro.StartupTimingMetric
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule
+import androidx.test.filters.LargeTest
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+
+/**
+ * Fluidez da rolagem do histórico (ReportScreen) e abertura da tela do cuidador.
+ */
+@LargeTest
+@RunWith(Parameterized::class)
+class ScreenBenchmarks(private val compilationMode: CompilationMode) {
+
+    @get:Rule
+    val rule = MacrobenchmarkRule()
+
+    @Test
+    fun reportScroll() = rule.measureRepeated(
+        packageName = PACKAGE_NAME,
+        metrics = listOf(FrameTimingMetric()),
+        compilationMode = compilationMode,
+        startupMode = StartupMode.WARM,
+        iterations = ITERATIONS,
+        setupBlock = {
+            pressHome()
+            startReport()
+        }
+    ) {
+        scrollReportHistory()
+    }
+
+    @Test
+    fun caregiverOpen() = rule.measureRepeated(
+        packageName = PACKAGE_NAME,
+        metrics = listOf(StartupTimingMetric(), FrameTimingMetric()),
+        compilationMode = compilationMode,
+        startupMode = StartupMode.COLD,
+        iterations = ITERATIONS,
+        setupBlock = { pressHome() }
+    ) {
+        startCaregiverHome()
+    }
+
+    companion object {
+        private const val ITERATIONS = 10
+
+        @Parameterized.Parameters(name = "compilation={0}")
+        @JvmStatic
+        fun compilationModes(): List<CompilationMode> = listOf(
+            CompilationMode.None(),
+            CompilationMode.Partial(BaselineProfileMode.UseIfAvailable)
+        )
+    }
+}
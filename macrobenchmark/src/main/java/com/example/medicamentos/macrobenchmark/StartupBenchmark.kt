@@ -0,0 +1,52 @@
+package com.example.medicamentos.macrobenchmark
+
+import androidx.benchmark.macro.BaselineProfileMode
+import androidx.benchmark.macro.CompilationMode
+import androidx.benchmark.macro.StartupMode
+import androidx.benchmark.macro.StartupTimingMetric
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule
+import androidx.test.filters.LargeTest
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+
+/**
+ * Tempo de abertura (TTID/TTFD) de MainActivity → HomeActivity, a frio e a quente,
+ * com e sem o Baseline Profile (usado se o APK trouxer um; senão a medida equivale a sem perfil).
+ */
+@LargeTest
+@RunWith(Parameterized::class)
+class StartupBenchmark(private val compilationMode: CompilationMode) {
+
+    @get:Rule
+    val rule = MacrobenchmarkRule()
+
+    @Test
+    fun startupCold() = startup(StartupMode.COLD)
+
+    @Test
+    fun startupWarm() = startup(StartupMode.WARM)
+
+    private fun startup(startupMode: StartupMode) = rule.measureRepeated(
+        packageName = PACKAGE_NAME,
+        metrics = listOf(StartupTimingMetric()),
+        compilationMode = compilationMode,
+        startupMode = startupMode,
+        iterations = ITERATIONS,
+        setupBlock = { pressHome() }
+    ) {
+        startHome()
+    }
+
+    companion object {
+        private const val ITERATIONS = 10
+
+        @Parameterized.Parameters(name = "compilation={0}")
+        @JvmStatic
+        fun compilationModes(): List<CompilationMode> = listOf(
+            CompilationMode.None(),
+            CompilationMode.Partial(BaselineProfileMode.UseIfAvailable)
+        )
+    }
+}
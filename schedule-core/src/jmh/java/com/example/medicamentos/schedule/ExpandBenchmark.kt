@@ -0,0 +1,90 @@
+package com.example.medicamentos.schedule
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.infra.Blackhole
+import java.text.SimpleDateFormat
+import java.time.LocalDate
+import java.time.ZoneId
+import java.util.Calendar
+import java.util.Date
+import java.util.Locale
+import java.util.TimeZone
+import java.util.concurrent.TimeUnit
+
+/**
+ * Expansão de 10 mil tratamentos (30 dias, 1 a 6 doses por dia): [DoseSchedule] contra o laço
+ * com Calendar + SimpleDateFormat que o app usava antes.
+ *
+ * ./gradlew :schedule-core:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class ExpandBenchmark {
+
+    private val zone = ZoneId.of("America/Sao_Paulo")
+    private lateinit var schedules: List<TreatmentSchedule>
+
+    @Setup
+    fun setUp() {
+        val start = LocalDate.of(2025, 3, 1)
+        schedules = (0 until TREATMENTS).map { index ->
+            val frequency = 1 + index % 6
+            TreatmentSchedule(
+                startDate = start.plusDays((index % 60).toLong()),
+                durationInDays = 30,
+                frequencyPerDay = frequency,
+                startHour = index % 24,
+                startMinute = index % 4 * 15,
+                intervalHours = 24 / frequency
+            )
+        }
+    }
+
+    @Benchmark
+    fun doseSchedule(blackhole: Blackhole) {
+        for (schedule in schedules) {
+            DoseSchedule.expand(schedule, zone) { date, time, epochMinute ->
+                blackhole.consume(date)
+                blackhole.consume(time)
+                blackhole.consume(epochMinute)
+            }
+        }
+    }
+
+    // Cópia do laço antigo de DoseGenerator.planDoses (Calendar reaproveitado, dois SimpleDateFormat por tratamento)
+    @Benchmark
+    fun legacyCalendar(blackhole: Blackhole) {
+        val timeZone = TimeZone.getTimeZone(zone)
+        for (schedule in schedules) {
+            val sdfDate = SimpleDateFormat("yyyy-MM-dd", Locale.US).apply { this.timeZone = timeZone }
+            val sdfTime = SimpleDateFormat("HH:mm", Locale.US).apply { this.timeZone = timeZone }
+            val calendar = Calendar.getInstance(timeZone)
+            val startDate = Date(schedule.startDate.atStartOfDay(zone).toInstant().toEpochMilli())
+            for (day in 0 until schedule.durationInDays) {
+                for (i in 0 until schedule.frequencyPerDay) {
+                    calendar.time = startDate
+                    calendar.add(Calendar.DAY_OF_YEAR, day)
+                    calendar.set(Calendar.HOUR_OF_DAY, schedule.startHour)
+                    calendar.set(Calendar.MINUTE, schedule.startMinute)
+                    calendar.set(Calendar.SECOND, 0)
+                    calendar.set(Calendar.MILLISECOND, 0)
+                    calendar.add(Calendar.HOUR_OF_DAY, i * schedule.intervalHours)
+                    blackhole.consume(sdfDate.format(calendar.time))
+                    blackhole.consume(sdfTime.format(calendar.time))
+                    blackhole.consume(calendar.timeInMillis / 60_000L)
+                }
+            }
+        }
+    }
+
+    private companion object {
+        const val TREATMENTS = 10_000
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.medicamentos.schedule
+
+import java.time.DateTimeException
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.time.LocalTime
+import java.time.ZoneId
+import java.time.ZoneOffset
+import java.time.zone.ZoneRules
+
+/**
+ * Matemática dos horários das doses com java.time.
+ *
+ * Os horários seguem o relógio local ("08:00 a cada 8h" continua 08:00, 16:00, 00:00 mesmo no
+ * dia em que muda o horário de verão); só a conversão para instante usa o fuso. Datas e horas
+ * são formatadas por tabela, sem criar um formatador por dose.
+ */
+object DoseSchedule {
+
+    // Usada pelo expand (inline), por isso não pode ser privada
+    @PublishedApi
+    internal const val MINUTES_PER_DAY = 24 * 60
+    private const val SECONDS_PER_MINUTE = 60L
+
+    // "00:00" .. "23:59", criados uma única vez
+    private val timeLabels: Array<String> = Array(MINUTES_PER_DAY) { minute ->
+        val hour = minute / 60
+        val min = minute % 60
+        String(charArrayOf('0' + hour / 10, '0' + hour % 10, ':', '0' + min / 10, '0' + min % 10))
+    }
+
+    /**
+     * Expande os dias [fromDay, toDay) do tratamento (índices a partir de startDate, já limitados
+     * à duração) chamando [emit] para cada dose em ordem cronológica. A data de cada dia é
+     * formatada uma vez e compartilhada pelas doses que caem nele.
+     */
+    inline fun expand(
+        schedule: TreatmentSchedule,
+        zone: ZoneId,
+        fromDay: Int = 0,
+        toDay: Int = schedule.durationInDays,
+        emit: (date: String, time: String, epochMinute: Long) -> Unit
+    ) {
+        val firstDay = maxOf(0, fromDay)
+        val lastDay = minOf(schedule.durationInDays, toDay)
+        if (schedule.frequencyPerDay <= 0 || firstDay >= lastDay) return
+
+        val rules = zone.rules
+        val startMinuteOfDay = schedule.startHour * 60 + schedule.startMinute
+        val startEpochDay = schedule.startDate.toEpochDay()
+        var cachedEpochDay = Long.MIN_VALUE
+        var cachedDate = ""
+
+        for (day in firstDay until lastDay) {
+            for (i in 0 until schedule.frequencyPerDay) {
+                // Minutos a partir da meia-noite do dia do tratamento (pode passar de 24h)
+                val offsetMinutes = startMinuteOfDay + i.toLong() * schedule.intervalHours * 60
+                val epochDay = startEpochDay + day + Math.floorDiv(offsetMinutes, MINUTES_PER_DAY.toLong())
+                val minuteOfDay = Math.floorMod(offsetMinutes, MINUTES_PER_DAY.toLong()).toInt()
+
+                if (epochDay != cachedEpochDay) {
+                    cachedEpochDay = epochDay
+                    cachedDate = formatDate(epochDay)
+                }
+                emit(cachedDate, timeLabel(minuteOfDay), toEpochMinute(epochDay, minuteOfDay, rules))
+            }
+        }
+    }
+
+    /** Mesmo que [expand], devolvendo uma lista (usado pela prévia e pelos testes). */
+    fun expandToList(
+        schedule: TreatmentSchedule,
+        zone: ZoneId,
+        fromDay: Int = 0,
+        toDay: Int = schedule.durationInDays
+    ): List<DoseSlot> {
+        val slots = ArrayList<DoseSlot>(maxOf(0, minOf(toDay, schedule.durationInDays) - maxOf(0, fromDay)) * maxOf(0, schedule.frequencyPerDay))
+        expand(schedule, zone, fromDay, toDay) { date, time, epochMinute -> slots.add(DoseSlot(date, time, epochMinute)) }
+        return slots
+    }
+
+    /** Horários ("HH:mm") de um dia de tratamento, como o usuário verá na lista. */
+    fun dailyTimes(startHour: Int, startMinute: Int, frequencyPerDay: Int, intervalHours: Int): List<String> {
+        val start = startHour * 60 + startMinute
+        return (0 until frequencyPerDay).map { i ->
+            timeLabel(Math.floorMod(start + i.toLong() * intervalHours * 60, MINUTES_PER_DAY.toLong()).toInt())
+        }
+    }
+
+    /**
+     * Adia uma dose em [minutes] no relógio local. Se passar da meia-noite, a data avança junto.
+     * Retorna null se [date]/[time] estiverem mal formatados.
+     */
+    fun postpone(date: String, time: String, minutes: Int, zone: ZoneId): DoseSlot? {
+        val epochDay = parseEpochDay(date) ?: return null
+        val minuteOfDay = parseMinuteOfDay(time) ?: return null
+        val total = minuteOfDay.toLong() + minutes
+        val newEpochDay = epochDay + Math.floorDiv(total, MINUTES_PER_DAY.toLong())
+        val newMinute = Math.floorMod(total, MINUTES_PER_DAY.toLong()).toInt()
+        return DoseSlot(formatDate(newEpochDay), timeLabel(newMinute), toEpochMinute(newEpochDay, newMinute, zone.rules))
+    }
+
+    /**
+     * "yyyy-MM-dd" + "HH:mm" (hora local em [zone]) em minutos desde a época.
+     * Retorna 0 se a data ou o horário estiverem mal formatados.
+     */
+    fun epochMinute(date: String, time: String, zone: ZoneId): Long {
+        val epochDay = parseEpochDay(date) ?: return 0
+        val minuteOfDay = parseMinuteOfDay(time) ?: return 0
+        return toEpochMinute(epochDay, minuteOfDay, zone.rules)
+    }
+
+    /** Dias de calendário entre duas datas (negativo se [to] vem antes de [from]). */
+    fun daysBetween(from: LocalDate, to: LocalDate): Int = (to.toEpochDay() - from.toEpochDay()).toInt()
+
+    fun timeLabel(minuteOfDay: Int): String = timeLabels[minuteOfDay]
+
+    fun formatDate(epochDay: Long): String {
+        val date = LocalDate.ofEpochDay(epochDay)
+        val year = date.year
+        val month = date.monthValue
+        val day = date.dayOfMonth
+        return String(
+            charArrayOf(
+                '0' + year / 1000 % 10, '0' + year / 100 % 10, '0' + year / 10 % 10, '0' + year % 10, '-',
+                '0' + month / 10, '0' + month % 10, '-',
+                '0' + day / 10, '0' + day % 10
+            )
+        )
+    }
+
+    /**
+     * Converte data/hora local em instante. Num buraco do horário de verão (ex.: 00:30 que não
+     * existe) vale o instante logo depois; numa sobreposição, a primeira ocorrência.
+     */
+    fun toEpochMinute(epochDay: Long, minuteOfDay: Int, rules: ZoneRules): Long {
+        val local = LocalDateTime.of(LocalDate.ofEpochDay(epochDay), LocalTime.of(minuteOfDay / 60, minuteOfDay % 60))
+        val offset = offsetFor(local, rules)
+        return Math.floorDiv(local.toEpochSecond(offset), SECONDS_PER_MINUTE)
+    }
+
+    private fun offsetFor(local: LocalDateTime, rules: ZoneRules): ZoneOffset {
+        val validOffsets = rules.getValidOffsets(local)
+        if (validOffsets.isNotEmpty()) return validOffsets[0]
+        // Buraco: usa o offset de antes da transição, o que empurra o horário para depois dela
+        return rules.getTransition(local).offsetBefore
+    }
+
+    // Leitura sem split/regex: "yyyy-MM-dd"
+    private fun parseEpochDay(date: String): Long? {
+        if (date.length != 10 || date[4] != '-' || date[7] != '-') return null
+        val year = digits(date, 0, 4) ?: return null
+        val month = digits(date, 5, 7) ?: return null
+        val day = digits(date, 8, 10) ?: return null
+        return try {
+            LocalDate.of(year, month, day).toEpochDay()
+        } catch (e: DateTimeException) {
+            null
+        }
+    }
+
+    // "HH:mm"
+    private fun parseMinuteOfDay(time: String): Int? {
+        if (time.length != 5 || time[2] != ':') return null
+        val hour = digits(time, 0, 2) ?: return null
+        val minute = digits(time, 3, 5) ?: return null
+        if (hour > 23 || minute > 59) return null
+        return hour * 60 + minute
+    }
+
+    private fun digits(text: String, start: Int, end: Int): Int? {
+        var value = 0
+        for (index in start until end) {
+            val c = text[index]
+            if (c !in '0'..'9') return null
+            value = value * 10 + (c - '0')
+        }
+        return value
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.medicamentos.schedule
+
+import java.time.LocalDate
+
+/**
+ * Parte de um tratamento que define os horários das doses, sem dependências do Android.
+ *
+ * Dia 0 é [startDate]; cada dia tem [frequencyPerDay] doses, a primeira em
+ * [startHour]:[startMinute] (hora local) e as seguintes a cada [intervalHours].
+ */
+data class TreatmentSchedule(
+    val startDate: LocalDate,
+    val durationInDays: Int,
+    val frequencyPerDay: Int,
+    val startHour: Int,
+    val startMinute: Int,
+    val intervalHours: Int
+)
+
+/** Horário de uma dose: data e hora locais já formatadas e o instante em minutos desde a época. */
+data class DoseSlot(
+    val date: String,
+    val time: String,
+    val epochMinute: Long
+)
@@ -0,0 +1,76 @@
+package com.example.medicamentos.schedule
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.time.ZoneId
+
+class DoseScheduleTest {
+
+    private val newYork = ZoneId.of("America/New_York")
+
+    private fun epochMinuteOf(local: LocalDateTime, zone: ZoneId) = local.atZone(zone).toEpochSecond() / 60
+
+    @Test
+    fun intervalsPastMidnightMoveToTheNextDate() {
+        val schedule = TreatmentSchedule(LocalDate.of(2025, 1, 31), 1, 3, 8, 0, 8)
+
+        val slots = DoseSchedule.expandToList(schedule, newYork)
+
+        assertEquals(listOf("2025-01-31", "2025-01-31", "2025-02-01"), slots.map { it.date })
+        assertEquals(listOf("08:00", "16:00", "00:00"), slots.map { it.time })
+        assertEquals(epochMinuteOf(LocalDateTime.of(2025, 2, 1, 0, 0), newYork), slots[2].epochMinute)
+    }
+
+    @Test
+    fun wallClockTimesAreKeptAcrossDaylightSavingChanges() {
+        // Em 09/03/2025 o relógio de Nova York pula de 02:00 para 03:00
+        val schedule = TreatmentSchedule(LocalDate.of(2025, 3, 8), 2, 2, 1, 0, 12)
+
+        val slots = DoseSchedule.expandToList(schedule, newYork)
+
+        assertEquals(listOf("01:00", "13:00", "01:00", "13:00"), slots.map { it.time })
+        // 01:00 de 08/03 até 01:00 de 09/03 são 24h; de 01:00 até 13:00 no dia da mudança, só 11h
+        assertEquals(24 * 60L, slots[2].epochMinute - slots[0].epochMinute)
+        assertEquals(11 * 60L, slots[3].epochMinute - slots[2].epochMinute)
+    }
+
+    @Test
+    fun timeInsideTheDaylightSavingGapIsPushedForward() {
+        val epochMinute = DoseSchedule.epochMinute("2025-03-09", "02:30", newYork)
+
+        assertEquals(epochMinuteOf(LocalDateTime.of(2025, 3, 9, 3, 30), newYork), epochMinute)
+    }
+
+    @Test
+    fun windowOnlyExpandsTheRequestedDays() {
+        val schedule = TreatmentSchedule(LocalDate.of(2025, 3, 10), 10, 2, 6, 30, 12)
+
+        val slots = DoseSchedule.expandToList(schedule, newYork, fromDay = 8, toDay = 20)
+
+        assertEquals(listOf("2025-03-18", "2025-03-18", "2025-03-19", "2025-03-19"), slots.map { it.date })
+    }
+
+    @Test
+    fun postponeCrossesMidnight() {
+        val slot = DoseSchedule.postpone("2025-12-31", "23:50", 15, newYork)!!
+
+        assertEquals("2026-01-01", slot.date)
+        assertEquals("00:05", slot.time)
+        assertEquals(DoseSchedule.epochMinute("2026-01-01", "00:05", newYork), slot.epochMinute)
+    }
+
+    @Test
+    fun malformedValuesAreRejected() {
+        assertEquals(0, DoseSchedule.epochMinute("2025-3-10", "08:00", newYork))
+        assertEquals(0, DoseSchedule.epochMinute("2025-03-10", "8h", newYork))
+        assertNull(DoseSchedule.postpone("2025-02-30", "08:00", 15, newYork))
+    }
+
+    @Test
+    fun dailyTimesMatchTheFirstDay() {
+        assertEquals(listOf("22:00", "06:00", "14:00"), DoseSchedule.dailyTimes(22, 0, 3, 8))
+    }
+}
@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "medicamentos"
 include(":app")
+include(":macrobenchmark")
+include(":schedule-core")
  
\ No newline at end of file